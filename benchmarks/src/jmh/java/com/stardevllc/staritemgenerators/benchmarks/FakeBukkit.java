@@ -0,0 +1,134 @@
+package com.stardevllc.staritemgenerators.benchmarks;
+
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Item;
+import org.bukkit.inventory.ItemStack;
+
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stand-ins for the Bukkit {@link World}, {@link Chunk} and {@link Item} interfaces so the generator code can run without a server <br>
+ * They are dynamic proxies that only implement the methods the generators use, everything else returns an empty default
+ */
+public final class FakeBukkit {
+    private FakeBukkit() {
+    }
+    
+    private static final AtomicInteger ENTITY_IDS = new AtomicInteger();
+    
+    public static World world(String name) {
+        UUID uid = UUID.nameUUIDFromBytes(name.getBytes());
+        World[] self = new World[1];
+        self[0] = proxy(World.class, (proxy, method, args) -> switch (method.getName()) {
+            case "getName" -> name;
+            case "getUID" -> uid;
+            case "isChunkLoaded" -> true;
+            case "getChunkAt" -> args.length == 2 ? chunk(self[0], (int) args[0], (int) args[1]) : null;
+            case "dropItem", "dropItemNaturally" -> item(self[0], (Location) args[0], (ItemStack) args[1]);
+            default -> defaultValue(proxy, method, args);
+        });
+        return self[0];
+    }
+    
+    public static Chunk chunk(World world, int x, int z) {
+        return proxy(Chunk.class, (proxy, method, args) -> switch (method.getName()) {
+            case "getWorld" -> world;
+            case "getX" -> x;
+            case "getZ" -> z;
+            case "isLoaded" -> true;
+            default -> defaultValue(proxy, method, args);
+        });
+    }
+    
+    public static Item item(World world, Location location, ItemStack itemStack) {
+        UUID uniqueId = UUID.randomUUID();
+        int entityId = ENTITY_IDS.incrementAndGet();
+        Location itemLocation = location.clone();
+        ItemStack[] stack = {itemStack};
+        boolean[] valid = {true};
+        return proxy(Item.class, (proxy, method, args) -> switch (method.getName()) {
+            case "getUniqueId" -> uniqueId;
+            case "getEntityId" -> entityId;
+            case "getWorld" -> world;
+            case "getLocation" -> {
+                if (args != null && args.length == 1 && args[0] instanceof Location target) {
+                    target.setWorld(world);
+                    target.setX(itemLocation.getX());
+                    target.setY(itemLocation.getY());
+                    target.setZ(itemLocation.getZ());
+                    yield target;
+                }
+                yield itemLocation.clone();
+            }
+            case "teleport" -> {
+                Location target = args[0] instanceof Location loc ? loc : ((org.bukkit.entity.Entity) args[0]).getLocation();
+                itemLocation.setX(target.getX());
+                itemLocation.setY(target.getY());
+                itemLocation.setZ(target.getZ());
+                yield true;
+            }
+            case "getItemStack" -> stack[0];
+            case "setItemStack" -> {
+                stack[0] = (ItemStack) args[0];
+                yield null;
+            }
+            case "isValid" -> valid[0];
+            case "isDead" -> !valid[0];
+            case "remove" -> {
+                valid[0] = false;
+                yield null;
+            }
+            default -> defaultValue(proxy, method, args);
+        });
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(FakeBukkit.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+    
+    private static Object defaultValue(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals" -> {
+                return proxy == args[0];
+            }
+            case "hashCode" -> {
+                return System.identityHashCode(proxy);
+            }
+            case "toString" -> {
+                return "Fake" + proxy.getClass().getInterfaces()[0].getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+            }
+        }
+        
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == double.class) {
+            return 0.0;
+        } else if (type == float.class) {
+            return 0.0F;
+        } else if (type == short.class) {
+            return (short) 0;
+        } else if (type == byte.class) {
+            return (byte) 0;
+        } else if (type == char.class) {
+            return (char) 0;
+        } else if (type.isArray()) {
+            return Array.newInstance(type.getComponentType(), 0);
+        } else if (List.class.isAssignableFrom(type) || type == Collection.class) {
+            return new ArrayList<>();
+        } else if (Set.class.isAssignableFrom(type)) {
+            return new HashSet<>();
+        }
+        
+        return null;
+    }
+}
\ No newline at end of file
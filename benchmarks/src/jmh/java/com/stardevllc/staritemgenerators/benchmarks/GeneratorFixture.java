@@ -0,0 +1,61 @@
+package com.stardevllc.staritemgenerators.benchmarks;
+
+import com.stardevllc.staritemgenerators.common.model.*;
+import com.stardevllc.staritemgenerators.common.scheduler.SpawnScheduler;
+import com.stardevllc.starlib.clock.ClockManager;
+import com.stardevllc.starmclib.Position;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.entity.Item;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A registry filled with generators, entries and spawned items in a fake world, driven by a manual clock
+ */
+public final class GeneratorFixture {
+    
+    private long time;
+    
+    public final SpawnScheduler scheduler = new SpawnScheduler(() -> time);
+    public final GeneratorRegistry registry = new GeneratorRegistry(new ClockManager(50), scheduler);
+    public final World world = FakeBukkit.world("benchmark");
+    public final List<ItemGenerator> generators = new ArrayList<>();
+    public final List<ItemEntry> entries = new ArrayList<>();
+    public final List<Item> items = new ArrayList<>();
+    
+    public GeneratorFixture(int generatorCount, int entriesPerGenerator, int itemsPerEntry, int maxItems, long cooldown) {
+        ItemStack stack = new ItemStack(Material.IRON_INGOT);
+        for (int g = 0; g < generatorCount; g++) {
+            //Spread generators over chunks like separate islands
+            int x = g * 32;
+            List<ItemEntry> generatorEntries = new ArrayList<>();
+            for (int e = 0; e < entriesPerGenerator; e++) {
+                generatorEntries.add(new ItemEntry("entry-" + e, stack, cooldown, maxItems, new Position(x + e, 64, 0), List.of()));
+            }
+            
+            ItemGenerator generator = new ItemGenerator("generator-" + g, generatorEntries, new Position(x - 4, 60, -4), new Position(x + 4, 70, 4));
+            registry.register(generator);
+            generator.init(world);
+            generator.start();
+            generators.add(generator);
+            
+            for (ItemEntry entry : generator.getItemEntries()) {
+                entries.add(entry);
+                Location location = new Location(world, entry.getSpawnPosition().getBlockX() + 0.5, 64, 0.5);
+                for (int i = 0; i < itemsPerEntry; i++) {
+                    Item item = FakeBukkit.item(world, location, stack.clone());
+                    generator.addSpawnedItem(entry, item);
+                    items.add(item);
+                }
+            }
+        }
+    }
+    
+    public void advance(long millis) {
+        this.time += millis;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,36 @@
+package com.stardevllc.staritemgenerators.benchmarks;
+
+import com.stardevllc.staritemgenerators.common.model.ItemEntry;
+import com.stardevllc.starmclib.Position;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ItemEntry#createItemStack()} with the cached template against creating a new stack
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ItemStackBenchmark {
+    
+    private ItemEntry entry;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        entry = new ItemEntry("iron", new ItemStack(Material.IRON_INGOT), 1000, 64, new Position(0, 64, 0), List.of());
+    }
+    
+    @Benchmark
+    public ItemStack createItemStack() {
+        return entry.createItemStack();
+    }
+    
+    @Benchmark
+    public ItemStack newItemStack() {
+        return new ItemStack(Material.IRON_INGOT);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.stardevllc.staritemgenerators.benchmarks;
+
+import com.stardevllc.staritemgenerators.common.listener.GeneratorListener;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.entity.Item;
+import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.event.entity.EntityDamageEvent.DamageCause;
+import org.bukkit.event.entity.ItemMergeEvent;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the {@link GeneratorListener} handlers for generator items and for items that do not belong to a generator
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ListenerLookupBenchmark {
+    
+    @Param({"10", "200", "1000"})
+    public int generators;
+    
+    @Param({"4"})
+    public int entriesPerGenerator;
+    
+    @Param({"8", "64"})
+    public int itemsPerEntry;
+    
+    private GeneratorFixture fixture;
+    private GeneratorListener listener;
+    private Item foreignItem;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        fixture = new GeneratorFixture(generators, entriesPerGenerator, itemsPerEntry, Integer.MAX_VALUE, 1000);
+        listener = new GeneratorListener(fixture.registry);
+        foreignItem = FakeBukkit.item(fixture.world, new Location(fixture.world, 0, 64, 0), new ItemStack(Material.DIRT));
+    }
+    
+    private Item randomItem() {
+        return fixture.items.get(ThreadLocalRandom.current().nextInt(fixture.items.size()));
+    }
+    
+    @Benchmark
+    public Object registryLookup() {
+        return fixture.registry.getSpawnedItem(randomItem());
+    }
+    
+    @Benchmark
+    public boolean itemDamageGeneratorItem() {
+        EntityDamageEvent event = new EntityDamageEvent(randomItem(), DamageCause.CUSTOM, 1.0);
+        listener.onItemDamage(event);
+        return event.isCancelled();
+    }
+    
+    @Benchmark
+    public boolean itemDamageForeignItem() {
+        EntityDamageEvent event = new EntityDamageEvent(foreignItem, DamageCause.CUSTOM, 1.0);
+        listener.onItemDamage(event);
+        return event.isCancelled();
+    }
+    
+    @Benchmark
+    public boolean itemMergeGeneratorItem() {
+        ItemMergeEvent event = new ItemMergeEvent(randomItem(), foreignItem);
+        listener.onItemMerge(event);
+        return event.isCancelled();
+    }
+}
\ No newline at end of file
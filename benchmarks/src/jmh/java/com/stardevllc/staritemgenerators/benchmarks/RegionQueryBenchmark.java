@@ -0,0 +1,61 @@
+package com.stardevllc.staritemgenerators.benchmarks;
+
+import com.stardevllc.staritemgenerators.common.model.ItemGenerator;
+import org.bukkit.Location;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures finding the generator at a location with the region index of the registry against checking every generator
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RegionQueryBenchmark {
+    
+    @Param({"10", "1000", "5000"})
+    public int generators;
+    
+    private GeneratorFixture fixture;
+    private Location[] locations;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        fixture = new GeneratorFixture(generators, 1, 0, 1, 1000);
+        locations = new Location[1024];
+        for (int i = 0; i < locations.length; i++) {
+            //Half of the locations are inside a generator and half are in the gaps between them
+            int generator = ThreadLocalRandom.current().nextInt(generators);
+            int offset = i % 2 == 0 ? 0 : 16;
+            locations[i] = new Location(fixture.world, generator * 32 + offset + 0.5, 64, 0.5);
+        }
+    }
+    
+    private Location randomLocation() {
+        return locations[ThreadLocalRandom.current().nextInt(locations.length)];
+    }
+    
+    @Benchmark
+    public Object indexedLookup() {
+        return fixture.registry.getGeneratorAt(randomLocation());
+    }
+    
+    @Benchmark
+    public Object linearLookup() {
+        Location location = randomLocation();
+        for (ItemGenerator generator : fixture.generators) {
+            if (generator.contains(location)) {
+                return generator;
+            }
+        }
+        
+        return null;
+    }
+    
+    @Benchmark
+    public Object radiusLookup() {
+        return fixture.registry.getGeneratorsNear(randomLocation(), 48);
+    }
+}
\ No newline at end of file
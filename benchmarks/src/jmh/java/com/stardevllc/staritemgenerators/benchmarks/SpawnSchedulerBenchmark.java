@@ -0,0 +1,45 @@
+package com.stardevllc.staritemgenerators.benchmarks;
+
+import com.stardevllc.staritemgenerators.common.scheduler.SpawnScheduler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a single {@link SpawnScheduler} tick, which is the firing of every due entry <br>
+ * Entries are capped so the world is not filled up during the measurement, this isolates the timer and cap check cost
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SpawnSchedulerBenchmark {
+    
+    @Param({"10", "200", "1000"})
+    public int generators;
+    
+    @Param({"1", "4"})
+    public int entriesPerGenerator;
+    
+    @Param({"8", "64"})
+    public int itemsPerEntry;
+    
+    /**
+     * The cooldown of the entries, with a 50ms tick 50 fires every entry on every tick
+     */
+    @Param({"50", "1000"})
+    public long cooldown;
+    
+    private GeneratorFixture fixture;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        fixture = new GeneratorFixture(generators, entriesPerGenerator, itemsPerEntry, itemsPerEntry, cooldown);
+    }
+    
+    @Benchmark
+    public long tick() {
+        fixture.advance(50);
+        fixture.scheduler.tick();
+        return fixture.scheduler.getLastTickFired();
+    }
+}
\ No newline at end of file
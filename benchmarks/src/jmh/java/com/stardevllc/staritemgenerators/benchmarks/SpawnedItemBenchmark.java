@@ -0,0 +1,77 @@
+package com.stardevllc.staritemgenerators.benchmarks;
+
+import com.stardevllc.staritemgenerators.common.model.*;
+import org.bukkit.entity.Item;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the spawned item tracking of {@link ItemGenerator}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SpawnedItemBenchmark {
+    
+    @Param({"10", "200", "1000"})
+    public int generators;
+    
+    @Param({"1", "4"})
+    public int entriesPerGenerator;
+    
+    @Param({"8", "64"})
+    public int itemsPerEntry;
+    
+    private GeneratorFixture fixture;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        fixture = new GeneratorFixture(generators, entriesPerGenerator, itemsPerEntry, Integer.MAX_VALUE, 1000);
+    }
+    
+    private ItemEntry randomEntry() {
+        return fixture.entries.get(ThreadLocalRandom.current().nextInt(fixture.entries.size()));
+    }
+    
+    private Item randomItem() {
+        return fixture.items.get(ThreadLocalRandom.current().nextInt(fixture.items.size()));
+    }
+    
+    @Benchmark
+    public int spawnedItemsCountByEntry() {
+        ItemEntry entry = randomEntry();
+        return entry.getGenerator().getSpawnedItemsCount(entry);
+    }
+    
+    @Benchmark
+    public int spawnedItemsCountByEntryId() {
+        ItemEntry entry = randomEntry();
+        return entry.getGenerator().getSpawnedItemsCount(entry.getId());
+    }
+    
+    @Benchmark
+    public Object spawnedItemsCopy() {
+        return randomEntry().getGenerator().getSpawnedItems();
+    }
+    
+    @Benchmark
+    public void spawnedItemsView(Blackhole blackhole) {
+        for (SpawnedItem spawnedItem : randomEntry().getGenerator().getSpawnedItemsView()) {
+            blackhole.consume(spawnedItem);
+        }
+    }
+    
+    /**
+     * Removes an item and adds it back so the amount of tracked items stays the same
+     */
+    @Benchmark
+    public void removeAndAddSpawnedItem() {
+        Item item = randomItem();
+        SpawnedItem spawnedItem = fixture.registry.getSpawnedItem(item);
+        spawnedItem.generator().removedSpawnedItem(item);
+        spawnedItem.generator().addSpawnedItem(spawnedItem.entry(), item);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,245 @@
+package com.stardevllc.staritemgenerators.benchmarks.simulation;
+
+import com.stardevllc.staritemgenerators.benchmarks.FakeBukkit;
+import com.stardevllc.staritemgenerators.common.model.*;
+import com.stardevllc.staritemgenerators.common.scheduler.SpawnPreparer;
+import com.stardevllc.staritemgenerators.common.scheduler.SpawnScheduler;
+import com.stardevllc.starlib.clock.ClockManager;
+import com.stardevllc.starmclib.Position;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.entity.Item;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * Runs generators against a fake world with a virtual clock, so hours of game time take seconds <br>
+ * Every tick the clock is moved forward one tick, the spawn scheduler is ticked and then players pick up items and old items despawn like the listeners would handle them. <br>
+ * Run with {@code ./gradlew :benchmarks:simulate -PsimArgs="--generators=2000 --hours=4"}
+ */
+public class Simulation {
+    
+    private final SimulationOptions options;
+    
+    private long time;
+    private long tick;
+    
+    private final SpawnScheduler scheduler = new SpawnScheduler(() -> time);
+    private final GeneratorRegistry registry = new GeneratorRegistry(new ClockManager(SimulationOptions.TICK_MILLIS), scheduler);
+    private final World world = FakeBukkit.world("simulation");
+    
+    /**
+     * Items in the world that players can pick up, picked items are swapped with the last item so removal does not shift the list
+     */
+    private final List<Item> pickupCandidates = new ArrayList<>();
+    
+    /**
+     * Items in the order they spawned with the tick they spawned on, so the head is always the next to despawn <br>
+     * This is a ring of plain arrays so the simulation itself does not add to the measured allocation
+     */
+    private Item[] despawnItems = new Item[1024];
+    private long[] despawnTicks = new long[1024];
+    private int despawnHead, despawnSize;
+    
+    private final SplittableRandom random;
+    
+    private long spawns, pickups, despawns;
+    
+    public Simulation(SimulationOptions options) {
+        this.options = options;
+        this.random = new SplittableRandom(options.seed());
+        scheduler.setPhaseSpread(options.phaseSpread());
+        scheduler.setMaxSpawnsPerTick(options.maxSpawnsPerTick());
+        if (options.prepare()) {
+            scheduler.setPreparer(new SpawnPreparer(Logger.getLogger("Simulation")));
+        }
+    }
+    
+    public static void main(String[] args) throws IOException {
+        SimulationOptions options = SimulationOptions.parse(args);
+        SimulationReport report = new Simulation(options).run();
+        System.out.println(report.format());
+        if (options.output() != null) {
+            File file = new File(options.output());
+            if (file.getParentFile() != null) {
+                file.getParentFile().mkdirs();
+            }
+            Files.writeString(file.toPath(), report.toJson());
+            System.out.println("Results written to " + file.getAbsolutePath());
+        }
+    }
+    
+    public SimulationReport run() {
+        setup();
+        
+        for (long i = 0; i < options.warmupTicks(); i++) {
+            tick();
+        }
+        
+        long measuredTicks = options.measuredTicks();
+        long[] tickNanos = new long[(int) measuredTicks];
+        long startSpawns = spawns, startPickups = pickups, startDespawns = despawns, startFired = scheduler.getTotalFired(), startDeferred = scheduler.getTotalDeferred();
+        
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        boolean allocationSupported = threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled();
+        long startAllocated = allocationSupported ? threadBean.getCurrentThreadAllocatedBytes() : 0;
+        long[] startGc = gcTotals();
+        
+        long start = System.nanoTime();
+        for (int i = 0; i < measuredTicks; i++) {
+            long tickStart = System.nanoTime();
+            tick();
+            tickNanos[i] = System.nanoTime() - tickStart;
+        }
+        long wallNanos = System.nanoTime() - start;
+        
+        if (scheduler.getPreparer() != null) {
+            scheduler.getPreparer().close();
+        }
+        
+        long allocated = allocationSupported ? threadBean.getCurrentThreadAllocatedBytes() - startAllocated : -1;
+        long[] endGc = gcTotals();
+        
+        return new SimulationReport(
+                options,
+                measuredTicks,
+                wallNanos,
+                spawns - startSpawns,
+                pickups - startPickups,
+                despawns - startDespawns,
+                scheduler.getTotalFired() - startFired,
+                scheduler.getTotalDeferred() - startDeferred,
+                registry.values().stream().mapToInt(ItemGenerator::getSpawnedItemsCount).sum(),
+                tickNanos,
+                allocated,
+                endGc[0] - startGc[0],
+                endGc[1] - startGc[1]
+        );
+    }
+    
+    private void setup() {
+        ItemStack stack = new ItemStack(Material.IRON_INGOT);
+        for (int g = 0; g < options.generators(); g++) {
+            //Spread generators over chunks like separate islands
+            int x = g * 32;
+            List<ItemEntry> entries = new ArrayList<>();
+            for (int e = 0; e < options.entriesPerGenerator(); e++) {
+                ItemEntry entry = new ItemEntry("entry-" + e, stack, options.cooldown() * (e + 1), options.maxItems(), new Position(x + e, 64, 0), List.of());
+                entry.addSpawnListener((item, itemEntry, generator) -> trackSpawn(item));
+                entries.add(entry);
+            }
+            
+            ItemGenerator generator = new ItemGenerator("generator-" + g, entries, new Position(x - 4, 60, -4), new Position(x + 4, 70, 4));
+            generator.setVirtual(options.virtual());
+            registry.register(generator);
+            generator.init(world);
+            generator.start();
+        }
+    }
+    
+    private void trackSpawn(Item item) {
+        spawns++;
+        pickupCandidates.add(item);
+        if (options.despawnTicks() > 0) {
+            if (despawnSize == despawnItems.length) {
+                growDespawnQueue();
+            }
+            
+            int index = (despawnHead + despawnSize++) % despawnItems.length;
+            despawnItems[index] = item;
+            despawnTicks[index] = tick;
+        }
+    }
+    
+    private void tick() {
+        time += SimulationOptions.TICK_MILLIS;
+        tick++;
+        scheduler.tick();
+        simulatePickups();
+        simulateDespawns();
+    }
+    
+    private void simulatePickups() {
+        //Rounds the average randomly so fractional rates are kept over many ticks
+        double rate = options.pickupsPerTick();
+        int count = (int) rate;
+        if (random.nextDouble() < rate - count) {
+            count++;
+        }
+        
+        for (int i = 0; i < count && !pickupCandidates.isEmpty(); i++) {
+            int index = random.nextInt(pickupCandidates.size());
+            Item item = pickupCandidates.get(index);
+            pickupCandidates.set(index, pickupCandidates.get(pickupCandidates.size() - 1));
+            pickupCandidates.remove(pickupCandidates.size() - 1);
+            
+            //Despawned items are still in the candidates, they are dropped here instead of searching the list on despawn
+            if (!item.isValid()) {
+                i--;
+                continue;
+            }
+            
+            SpawnedItem spawnedItem = registry.getSpawnedItem(item);
+            if (spawnedItem != null) {
+                spawnedItem.entry().handleItemPickup(null, item, spawnedItem.entry());
+                spawnedItem.generator().removedSpawnedItem(item);
+            }
+            item.remove();
+            pickups++;
+        }
+    }
+    
+    private void simulateDespawns() {
+        while (despawnSize > 0 && tick - despawnTicks[despawnHead] >= options.despawnTicks()) {
+            Item item = despawnItems[despawnHead];
+            despawnItems[despawnHead] = null;
+            despawnHead = (despawnHead + 1) % despawnItems.length;
+            despawnSize--;
+            if (!item.isValid()) {
+                continue;
+            }
+            
+            SpawnedItem spawnedItem = registry.getSpawnedItem(item);
+            if (spawnedItem != null) {
+                if (spawnedItem.entry().hasFlag(ItemEntry.Flag.PERSISTENT)) {
+                    continue;
+                }
+                
+                spawnedItem.generator().removedSpawnedItem(item);
+            }
+            item.remove();
+            despawns++;
+        }
+    }
+    
+    private void growDespawnQueue() {
+        Item[] items = new Item[despawnItems.length * 2];
+        long[] ticks = new long[despawnTicks.length * 2];
+        for (int i = 0; i < despawnSize; i++) {
+            int index = (despawnHead + i) % despawnItems.length;
+            items[i] = despawnItems[index];
+            ticks[i] = despawnTicks[index];
+        }
+        
+        this.despawnItems = items;
+        this.despawnTicks = ticks;
+        this.despawnHead = 0;
+    }
+    
+    private static long[] gcTotals() {
+        long count = 0, millis = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, bean.getCollectionCount());
+            millis += Math.max(0, bean.getCollectionTime());
+        }
+        
+        return new long[]{count, millis};
+    }
+}
\ No newline at end of file
@@ -0,0 +1,68 @@
+package com.stardevllc.staritemgenerators.benchmarks.simulation;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The settings of a simulation run, parsed from arguments in the form {@code --name=value}
+ *
+ * @param generators          The amount of generators
+ * @param entriesPerGenerator The amount of entries in each generator
+ * @param cooldown            The cooldown in milliseconds of the first entry, each following entry has a multiple of this like resource tiers
+ * @param maxItems            The max items of each entry
+ * @param hours               The amount of game time to simulate in hours
+ * @param warmupMinutes       The amount of game time in minutes that is run before the measurement starts
+ * @param pickupsPerTick      The average amount of items picked up by players each tick
+ * @param despawnTicks        The amount of ticks an item stays in the world before it despawns, 0 or less never despawns
+ * @param phaseSpread         The phase spread of the spawn scheduler in milliseconds
+ * @param maxSpawnsPerTick    The spawn budget of the spawn scheduler, 0 or less is unlimited
+ * @param virtual             If the generators store items as counters, no players are in the simulated world so nothing is materialized
+ * @param prepare             If the items of entries that are due on the next tick are prepared on a worker thread
+ * @param seed                The seed for pickups so runs can be compared
+ * @param output              The file to write the results to as JSON, or null to only print them
+ */
+public record SimulationOptions(int generators, int entriesPerGenerator, long cooldown, int maxItems, double hours, double warmupMinutes, double pickupsPerTick, long despawnTicks, long phaseSpread, int maxSpawnsPerTick, boolean virtual, boolean prepare, long seed, String output) {
+    
+    public static final long TICK_MILLIS = 50;
+    
+    public static SimulationOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Invalid argument " + arg + ", arguments must be in the form --name=value");
+            }
+            
+            int split = arg.indexOf('=');
+            if (split == -1) {
+                values.put(arg.substring(2), "true");
+            } else {
+                values.put(arg.substring(2, split), arg.substring(split + 1));
+            }
+        }
+        
+        return new SimulationOptions(
+                Integer.parseInt(values.getOrDefault("generators", "1000")),
+                Integer.parseInt(values.getOrDefault("entries", "3")),
+                Long.parseLong(values.getOrDefault("cooldown", "1000")),
+                Integer.parseInt(values.getOrDefault("max-items", "64")),
+                Double.parseDouble(values.getOrDefault("hours", "2")),
+                Double.parseDouble(values.getOrDefault("warmup-minutes", "5")),
+                Double.parseDouble(values.getOrDefault("pickups-per-tick", "20")),
+                Long.parseLong(values.getOrDefault("despawn-ticks", "6000")),
+                Long.parseLong(values.getOrDefault("phase-spread", "0")),
+                Integer.parseInt(values.getOrDefault("max-spawns-per-tick", "0")),
+                Boolean.parseBoolean(values.getOrDefault("virtual", "false")),
+                Boolean.parseBoolean(values.getOrDefault("prepare", "false")),
+                Long.parseLong(values.getOrDefault("seed", "1")),
+                values.get("output")
+        );
+    }
+    
+    public long warmupTicks() {
+        return (long) (warmupMinutes * 60 * 1000 / TICK_MILLIS);
+    }
+    
+    public long measuredTicks() {
+        return (long) (hours * 60 * 60 * 1000 / TICK_MILLIS);
+    }
+}
\ No newline at end of file
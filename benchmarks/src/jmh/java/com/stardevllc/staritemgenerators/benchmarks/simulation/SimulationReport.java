@@ -0,0 +1,124 @@
+package com.stardevllc.staritemgenerators.benchmarks.simulation;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The results of the measured part of a simulation run
+ *
+ * @param options          The options the simulation ran with
+ * @param ticks            The amount of measured ticks
+ * @param wallNanos        The real time the measured ticks took
+ * @param spawns           The amount of items spawned
+ * @param pickups          The amount of items picked up
+ * @param despawns         The amount of items despawned
+ * @param fired            The amount of times an entry was fired by the scheduler, entries at their max items fire without spawning
+ * @param deferred         The amount of times an entry was deferred because of the spawn budget
+ * @param finalItems       The amount of spawned items tracked by all generators at the end
+ * @param tickNanos        The time each measured tick took
+ * @param allocatedBytes   The bytes allocated by the simulation thread, or -1 if the JVM does not support measuring it
+ * @param gcCount          The amount of garbage collections
+ * @param gcMillis         The time spent in garbage collection
+ */
+public record SimulationReport(SimulationOptions options, long ticks, long wallNanos, long spawns, long pickups, long despawns, long fired, long deferred, int finalItems, long[] tickNanos, long allocatedBytes, long gcCount, long gcMillis) {
+    
+    public SimulationReport {
+        tickNanos = tickNanos.clone();
+        Arrays.sort(tickNanos);
+    }
+    
+    /**
+     * @param percentile The percentile between 0 and 100
+     * @return The tick time in nanoseconds at the percentile
+     */
+    public long tickPercentile(double percentile) {
+        if (tickNanos.length == 0) {
+            return 0;
+        }
+        
+        int index = (int) Math.ceil(percentile / 100.0 * tickNanos.length) - 1;
+        return tickNanos[Math.max(0, Math.min(tickNanos.length - 1, index))];
+    }
+    
+    public double wallSeconds() {
+        return wallNanos / 1_000_000_000.0;
+    }
+    
+    public double gameSeconds() {
+        return ticks * SimulationOptions.TICK_MILLIS / 1000.0;
+    }
+    
+    public double spawnsPerSecond() {
+        return spawns / wallSeconds();
+    }
+    
+    public double ticksPerSecond() {
+        return ticks / wallSeconds();
+    }
+    
+    public double allocatedBytesPerSecond() {
+        return allocatedBytes < 0 ? -1 : allocatedBytes / wallSeconds();
+    }
+    
+    public double allocatedBytesPerTick() {
+        return allocatedBytes < 0 || ticks == 0 ? -1 : (double) allocatedBytes / ticks;
+    }
+    
+    public String format() {
+        StringBuilder sb = new StringBuilder();
+        line(sb, "Generators", "%d x %d entries, cooldown %dms, max items %d%s%s", options.generators(), options.entriesPerGenerator(), options.cooldown(), options.maxItems(), options.virtual() ? ", virtual" : "", options.prepare() ? ", prepared" : "");
+        line(sb, "Game time", "%.1f hours in %.2fs (%.0fx real time)", gameSeconds() / 3600, wallSeconds(), gameSeconds() / wallSeconds());
+        line(sb, "Throughput", "%.0f ticks/s, %.0f spawns/s", ticksPerSecond(), spawnsPerSecond());
+        line(sb, "Items", "%d spawned, %d picked up, %d despawned, %d at the end", spawns, pickups, despawns, finalItems);
+        line(sb, "Scheduler", "%d fired, %d deferred", fired, deferred);
+        line(sb, "Tick time", "p50 %s, p90 %s, p99 %s, p99.9 %s, max %s", micros(tickPercentile(50)), micros(tickPercentile(90)), micros(tickPercentile(99)), micros(tickPercentile(99.9)), micros(tickPercentile(100)));
+        if (allocatedBytes >= 0) {
+            line(sb, "Allocation", "%.1f MB/s, %.0f bytes/tick", allocatedBytesPerSecond() / (1024 * 1024), allocatedBytesPerTick());
+        } else {
+            line(sb, "Allocation", "not supported by this JVM");
+        }
+        line(sb, "GC", "%d collections, %dms", gcCount, gcMillis);
+        return sb.toString();
+    }
+    
+    public String toJson() {
+        return String.format(Locale.ROOT, """
+                {
+                  "generators": %d,
+                  "entriesPerGenerator": %d,
+                  "cooldown": %d,
+                  "maxItems": %d,
+                  "virtual": %b,
+                  "prepare": %b,
+                  "ticks": %d,
+                  "wallSeconds": %.3f,
+                  "ticksPerSecond": %.1f,
+                  "spawnsPerSecond": %.1f,
+                  "spawns": %d,
+                  "pickups": %d,
+                  "despawns": %d,
+                  "fired": %d,
+                  "deferred": %d,
+                  "finalItems": %d,
+                  "tickNanosP50": %d,
+                  "tickNanosP90": %d,
+                  "tickNanosP99": %d,
+                  "tickNanosP999": %d,
+                  "tickNanosMax": %d,
+                  "allocatedBytesPerSecond": %.1f,
+                  "allocatedBytesPerTick": %.1f,
+                  "gcCount": %d,
+                  "gcMillis": %d
+                }
+                """, options.generators(), options.entriesPerGenerator(), options.cooldown(), options.maxItems(), options.virtual(), options.prepare(), ticks, wallSeconds(), ticksPerSecond(), spawnsPerSecond(), spawns, pickups, despawns, fired, deferred, finalItems,
+                tickPercentile(50), tickPercentile(90), tickPercentile(99), tickPercentile(99.9), tickPercentile(100), allocatedBytesPerSecond(), allocatedBytesPerTick(), gcCount, gcMillis);
+    }
+    
+    private static void line(StringBuilder sb, String name, String format, Object... args) {
+        sb.append(String.format(Locale.ROOT, "%-12s", name)).append(String.format(Locale.ROOT, format, args)).append('\n');
+    }
+    
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.1fus", nanos / 1000.0);
+    }
+}
\ No newline at end of file
@@ -1,23 +1,41 @@
 package com.stardevllc.staritemgenerators.common;
 
+import com.stardevllc.staritemgenerators.common.metrics.GeneratorMetrics;
+import com.stardevllc.staritemgenerators.common.metrics.HandlerMetrics;
+import com.stardevllc.staritemgenerators.common.metrics.OpenMetricsExporter;
 import com.stardevllc.staritemgenerators.common.model.*;
+import com.stardevllc.staritemgenerators.common.scheduler.ExecutionBackend;
+import com.stardevllc.staritemgenerators.common.scheduler.SpawnScheduler;
+import com.stardevllc.staritemgenerators.common.storage.GeneratorStorage;
 import com.stardevllc.starlib.clock.ClockManager;
-import com.stardevllc.starlib.objects.registry.RegistryObject;
 import org.bukkit.Bukkit;
+import org.bukkit.World;
 import org.bukkit.entity.Item;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.plugin.RegisteredServiceProvider;
 import org.bukkit.plugin.ServicePriority;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
 public final class StarItemGenerators {
     private StarItemGenerators() {
     }
     
     private static JavaPlugin plugin;
     
+    private static ExecutionBackend execution;
+    
     private static GeneratorRegistry generatorRegistry;
     
+    private static GeneratorStorage generatorStorage;
+    
+    private static HandlerMetrics itemPickupMetrics;
+    
+    private static OpenMetricsExporter metricsExporter;
+    
     public static void init(JavaPlugin plugin) {
         if (StarItemGenerators.plugin != null) {
             plugin.getLogger().severe("StarItemGenerators has already been initialized by " + StarItemGenerators.plugin.getName());
@@ -26,37 +44,144 @@ public final class StarItemGenerators {
         
         StarItemGenerators.plugin = plugin;
         
+        //Folia does not allow the Bukkit scheduler, so all tasks go through the backend for the server
+        StarItemGenerators.execution = ExecutionBackend.create(plugin);
+        
         ClockManager clockManager;
         
         RegisteredServiceProvider<ClockManager> cmreg = Bukkit.getServicesManager().getRegistration(ClockManager.class);
         if (cmreg == null || cmreg.getProvider() == null) {
             clockManager = new ClockManager(50);
-            Bukkit.getScheduler().runTaskTimer(plugin, clockManager.getRunnable(), 1L, 1L);
+            execution.runGlobalTimer(clockManager.getRunnable(), 1L, 1L);
         } else {
             clockManager = cmreg.getProvider();
         }
         
-        StarItemGenerators.generatorRegistry = new GeneratorRegistry(clockManager);
+        StarItemGenerators.generatorRegistry = new GeneratorRegistry(clockManager, new SpawnScheduler(), execution);
         Bukkit.getServer().getServicesManager().register(GeneratorRegistry.class, generatorRegistry, plugin, ServicePriority.Normal);
         
-        //TODO Load from files (After ItemBuilder saving and loading is properly implemented
+        //On region threaded servers every generator has its own scheduler that is ticked by its region
+        if (!execution.isRegionThreaded()) {
+            execution.runGlobalTimer(generatorRegistry.getSpawnScheduler(), 1L, 1L);
+        }
+        
+        GeneratorMetrics metrics = generatorRegistry.getMetrics();
+        Bukkit.getServer().getServicesManager().register(GeneratorMetrics.class, metrics, plugin, ServicePriority.Normal);
+        execution.runGlobalTimer(metrics::sample, 20L, 20L);
+        StarItemGenerators.itemPickupMetrics = metrics.handler("item_pickup");
+        StarItemGenerators.metricsExporter = new OpenMetricsExporter(metrics, plugin.getLogger());
+        
+        //Entries are saved with their built item until ItemBuilder saving and loading is properly implemented
+        StarItemGenerators.generatorStorage = new GeneratorStorage(new File(plugin.getDataFolder(), "generators"), plugin.getLogger());
+        generatorRegistry.addRemoveListener(generator -> {
+            if (generator.isSaved()) {
+                generatorStorage.delete(generator.getId());
+            }
+        });
+        generatorStorage.loadAll().thenAccept(loaded -> execution.runGlobal(() -> {
+            generatorStorage.register(generatorRegistry, loaded);
+            plugin.getLogger().info("Loaded " + loaded.size() + " item generator(s)");
+        }));
     }
     
-    public static boolean handleItemPickup(LivingEntity entity, Item item, int remaining) {
-        for (RegistryObject<String, ItemGenerator> entry : generatorRegistry) {
-            for (SpawnedItem spawnedItem : entry.get().getSpawnedItems()) {
-                if (item.equals(spawnedItem.item())) {
-                    spawnedItem.entry().handleItemPickup(entity, item, spawnedItem.entry());
-                }
+    /**
+     * Saves all registered generators, the files are written in the background
+     *
+     * @return A future that completes when all generators are written
+     */
+    public static CompletableFuture<Void> saveGenerators() {
+        return generatorStorage.saveAll(generatorRegistry.values());
+    }
+    
+    /**
+     * Starts saving the generators that changed on an interval
+     *
+     * @param intervalTicks The interval in ticks, 0 or less disables autosaving
+     */
+    public static void startAutosave(long intervalTicks) {
+        generatorStorage.startAutosave(execution, generatorRegistry, intervalTicks);
+    }
+    
+    /**
+     * Serves the generator metrics in the OpenMetrics format at {@code http://host:port/metrics}
+     *
+     * @param host The host to bind to
+     * @param port The port
+     * @throws IOException If the server could not be started
+     */
+    public static void startMetricsHttpExporter(String host, int port) throws IOException {
+        metricsExporter.startHttp(host, port);
+    }
+    
+    /**
+     * Writes the generator metrics in the OpenMetrics format to a file on an interval
+     *
+     * @param file          The file
+     * @param intervalTicks The interval in ticks
+     */
+    public static void startMetricsFileExporter(File file, long intervalTicks) {
+        metricsExporter.startFile(execution, file, intervalTicks);
+    }
+    
+    /**
+     * Saves all generators and waits for them to be written, this should be called when the plugin disables
+     */
+    public static void shutdown() {
+        if (metricsExporter != null) {
+            metricsExporter.close();
+        }
+        
+        if (generatorRegistry != null) {
+            if (generatorRegistry.getSpawnScheduler().getPreparer() != null) {
+                generatorRegistry.getSpawnScheduler().getPreparer().close();
             }
             
-            entry.get().removedSpawnedItem(item);
+            generatorRegistry.getListenerDispatcher().close();
         }
         
+        if (generatorStorage == null) {
+            return;
+        }
+        
+        saveGenerators().join();
+        generatorStorage.close();
+    }
+    
+    public static void handleWorldLoad(World world) {
+        generatorStorage.handleWorldLoad(generatorRegistry, world);
+    }
+    
+    public static boolean handleItemPickup(LivingEntity entity, Item item, int remaining) {
+        long start = System.nanoTime();
+        SpawnedItem spawnedItem = generatorRegistry.getSpawnedItem(item);
+        if (spawnedItem == null) {
+            itemPickupMetrics.record(start);
+            return false;
+        }
+        
+        spawnedItem.entry().handleItemPickup(entity, item, spawnedItem.entry());
+        spawnedItem.generator().removedSpawnedItem(item);
+        itemPickupMetrics.record(start);
         return false;
     }
     
+    public static ExecutionBackend getExecution() {
+        return execution;
+    }
+    
     public static GeneratorRegistry getGeneratorRegistry() {
         return generatorRegistry;
     }
+    
+    public static GeneratorMetrics getGeneratorMetrics() {
+        return generatorRegistry.getMetrics();
+    }
+    
+    public static OpenMetricsExporter getMetricsExporter() {
+        return metricsExporter;
+    }
+    
+    public static GeneratorStorage getGeneratorStorage() {
+        return generatorStorage;
+    }
 }
\ No newline at end of file
@@ -2,8 +2,13 @@ package com.stardevllc.staritemgenerators.common.command;
 
 import com.stardevllc.itembuilder.ItemBuilders;
 import com.stardevllc.smaterial.SMaterial;
+import com.stardevllc.staritemgenerators.common.StarItemGenerators;
+import com.stardevllc.staritemgenerators.common.metrics.HandlerMetrics;
+import com.stardevllc.staritemgenerators.common.metrics.MetricsSnapshot;
 import com.stardevllc.staritemgenerators.common.model.*;
 import com.stardevllc.staritemgenerators.common.model.ItemEntry.Flag;
+import com.stardevllc.staritemgenerators.common.model.listener.AsyncListenerDispatcher;
+import com.stardevllc.staritemgenerators.common.scheduler.SpawnScheduler;
 import com.stardevllc.starlib.objects.registry.RegistryObject;
 import com.stardevllc.starlib.time.TimeFormat;
 import com.stardevllc.starlib.time.TimeParser;
@@ -21,6 +26,7 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerQuitEvent;
 
+import java.io.File;
 import java.util.*;
 
 public class ItemGeneratorCommand implements CommandExecutor, Listener {
@@ -60,6 +66,8 @@ public class ItemGeneratorCommand implements CommandExecutor, Listener {
             private static final Param<Boolean> INVENTORY_PICKUP = new Param<>("ip", "Inventory Pickup", Boolean.class, false);
             private static final Param<Boolean> PERSISTENT = new Param<>("persistent", "Persistent", Boolean.class, true);
             private static final Param<Integer> MAX_COUNT = new Param<>("maxitems", "Max Items", Integer.class, Integer.MAX_VALUE);
+            private static final Param<Boolean> STACK_MERGE = new Param<>("stackmerge", "Stack Merge", Boolean.class, false);
+            private static final Param<Boolean> REGION_CAP = new Param<>("regioncap", "Region Cap", Boolean.class, false);
         }
     }
     
@@ -69,7 +77,7 @@ public class ItemGeneratorCommand implements CommandExecutor, Listener {
         Bukkit.getServer().getPluginManager().registerEvents(this, plugin);
         
         this.cmdFlags = new CmdFlags(Flags.DEBUG, Flags.Create.SELECT, Flags.Create.INIT, Flags.Create.START);
-        this.cmdParams = new CmdParams(Params.Item.ID, Params.Item.MATERIAL, Params.Item.COOLDOWN, Params.Item.INVULNERABLE, Params.Item.INVENTORY_PICKUP, Params.Item.PERSISTENT, Params.Item.MAX_COUNT);
+        this.cmdParams = new CmdParams(Params.Item.ID, Params.Item.MATERIAL, Params.Item.COOLDOWN, Params.Item.INVULNERABLE, Params.Item.INVENTORY_PICKUP, Params.Item.PERSISTENT, Params.Item.MAX_COUNT, Params.Item.STACK_MERGE, Params.Item.REGION_CAP);
     }
     
     @Override
@@ -191,6 +199,53 @@ public class ItemGeneratorCommand implements CommandExecutor, Listener {
             selectedGenerators.put(player.getUniqueId(), generator.getId());
             colors.coloredLegacy(sender, "&eSelected the Item Generator &b" + generator.getId());
             return true;
+        } else if (args[0].equalsIgnoreCase("save")) {
+            StarItemGenerators.saveGenerators().thenRun(() -> StarItemGenerators.getExecution().runGlobal(() -> colors.coloredLegacy(sender, "&eSaved all Item Generators")));
+            colors.coloredLegacy(sender, "&eSaving all Item Generators...");
+            return true;
+        } else if (args[0].equalsIgnoreCase("export")) {
+            File file = new File(plugin.getDataFolder(), "generators-export.yml");
+            StarItemGenerators.getGeneratorStorage().exportYaml(registry.values(), file).thenRun(() -> StarItemGenerators.getExecution().runGlobal(() -> colors.coloredLegacy(sender, "&eExported all Item Generators to &b" + file.getName())));
+            colors.coloredLegacy(sender, "&eExporting all Item Generators...");
+            return true;
+        } else if (args[0].equalsIgnoreCase("metrics")) {
+            if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+                registry.getMetrics().reset();
+                registry.getSpawnScheduler().resetMetrics();
+                registry.getListenerDispatcher().resetMetrics();
+                colors.coloredLegacy(sender, "&eReset the Item Generator metrics");
+                return true;
+            }
+            
+            List<String> lines = new LinkedList<>();
+            if (args.length > 1) {
+                ItemGenerator generator = registry.get(args[1]);
+                if (generator == null) {
+                    colors.coloredLegacy(sender, "&cThe id " + args[1] + " does not match a valid generator.");
+                    return true;
+                }
+                
+                lines.add("&6Metrics for Item Generator &b" + generator.getId());
+                addMetricsLines(lines, "", generator.getMetricsSnapshot());
+                for (ItemEntry entry : generator.getItemEntries()) {
+                    lines.add("  &e" + entry.getId() + ":");
+                    addMetricsLines(lines, "    ", entry.getMetricsSnapshot());
+                }
+            } else {
+                lines.add("&6Metrics for all Item Generators");
+                addMetricsLines(lines, "", registry.getMetrics().getTotal());
+                SpawnScheduler scheduler = registry.getSpawnScheduler();
+                lines.add("&eScheduler: &b" + scheduler.getScheduledCount() + " &escheduled, &b" + formatNanos(scheduler.getAverageTickNanos()) + " &eavg tick, &b" + formatNanos(scheduler.getMaxTickNanos()) + " &emax tick");
+                AsyncListenerDispatcher dispatcher = registry.getListenerDispatcher();
+                lines.add("&eAsync Listeners: &b" + dispatcher.getQueued() + " &equeued (&b" + dispatcher.getMaxQueued() + " &emax), &b" + dispatcher.getDelivered() + " &edelivered, &b" + dispatcher.getDropped() + " &edropped, &b" + dispatcher.getFailures() + " &efailed");
+                lines.add("&eHandlers:");
+                for (HandlerMetrics handler : registry.getMetrics().getHandlers()) {
+                    lines.add("  &e" + handler.getName() + ": &b" + handler.getCalls() + " &ecalls, &b" + formatNanos(handler.getAverageNanos()) + " &eavg, &b" + formatNanos(handler.getMaxNanos()) + " &emax, &b" + formatNanos(handler.getTotalNanos()) + " &etotal");
+                }
+            }
+            
+            lines.forEach(line -> colors.coloredLegacy(sender, line));
+            return true;
         } else if (args[0].equalsIgnoreCase("status")) {
             String genId;
             if (args.length > 1) {
@@ -221,11 +276,15 @@ public class ItemGeneratorCommand implements CommandExecutor, Listener {
             lines.add("&eRunning: " + formatBoolean(generator.runningProperty().get()));
             lines.add("&eWorld: &b" + (generator.getWorld() != null ? generator.getWorld().getName() : "None"));
             lines.add("&eSpawned Items: &b" + generator.getSpawnedItemsCount());
+            lines.add("&eVirtual: " + formatBoolean(generator.isVirtual()));
             lines.add("&eEntries: ");
             for (ItemEntry entry : generator.getItemEntries()) {
                 lines.add("  &e" + entry.getId() + ":");
                 lines.add("    &eCooldown: &b" + timeFormat.format(entry.getCooldown()));
                 lines.add("    &eMax items: &b" + entry.getMaxItems());
+                if (entry instanceof LootTableEntry lootEntry) {
+                    lines.add("    &eLoot Outcomes: &b" + lootEntry.getLootTable().size());
+                }
                 List<String> flags = new ArrayList<>();
                 for (Flag flag : entry.getFlags()) {
                     flags.add(flag.name().toLowerCase());
@@ -234,10 +293,23 @@ public class ItemGeneratorCommand implements CommandExecutor, Listener {
                 String flagsString = String.join(", ", flags);
                 lines.add("    &eFlags: &b" + (flagsString.isBlank() ? "None" : flagsString));
                 lines.add("    &eSpawned Items: &b" + generator.getSpawnedItemsCount(entry.getId()));
+                if (entry.hasFlag(Flag.STACK_MERGE)) {
+                    lines.add("    &eSpawned Amount: &b" + generator.getSpawnedItemsAmount(entry));
+                }
+                if (entry.hasFlag(Flag.REGION_CAP)) {
+                    generator.refreshRegionItems(entry, true);
+                    lines.add("    &eItems In Region: &b" + generator.getSpawnedItemsCountInRegion(entry));
+                }
+                if (generator.isVirtual()) {
+                    lines.add("    &eVirtual Items: &b" + generator.getVirtualItemsCount(entry));
+                }
                 Position pos = entry.getSpawnPosition();
                 lines.add("    &ePos: &b(" + pos.getBlockX() + ", " + pos.getBlockY() + ", " + pos.getBlockZ() + ")");
+                if (entry.getSpawnPointCount() > 1) {
+                    lines.add("    &eSpawn Points: &b" + entry.getSpawnPointCount() + " (" + entry.getSpawnStrategy().name().toLowerCase() + ")");
+                }
                 lines.add("    &eWorld: &b" + (entry.getWorld() != null ? entry.getWorld().getName() : "None"));
-                lines.add("    &eNext Spawn: &b" + (entry.getTimer() != null ? timeFormat.format(entry.getTimer().getTime())/* + " (" + entry.getTimer().statusProperty().get().name() + ")" */: "0s"));
+                lines.add("    &eNext Spawn: &b" + (entry.getSpawnHandle() != null ? timeFormat.format(entry.getTimeUntilNextSpawn()) : "0s"));
             }
             
             lines.forEach(line -> colors.coloredLegacy(sender, line));
@@ -252,7 +324,7 @@ public class ItemGeneratorCommand implements CommandExecutor, Listener {
         
         ItemGenerator generator = registry.get(genId);
         if (generator == null) {
-            colors.coloredLegacy(sender, "&cThe id " + genId + " does not match a valid generator."); 
+            colors.coloredLegacy(sender, "&cThe id " + genId + " does not match a valid generator.");
             return true;
         }
         
@@ -280,10 +352,30 @@ public class ItemGeneratorCommand implements CommandExecutor, Listener {
             
             generator.stop();
             colors.coloredLegacy(sender, "&eStopped the Item Generator &b" + generator.getId());
+        } else if (args[0].equalsIgnoreCase("virtual")) {
+            if (args.length > 1) {
+                double radius;
+                try {
+                    radius = Double.parseDouble(args[1]);
+                } catch (NumberFormatException ex) {
+                    colors.coloredLegacy(sender, "&cInvalid number provided: " + args[1]);
+                    return true;
+                }
+                
+                if (!Double.isFinite(radius) || radius < 0) {
+                    colors.coloredLegacy(sender, "&cThe materialize radius must be 0 or higher.");
+                    return true;
+                }
+                
+                generator.setMaterializeRadius(radius);
+            }
+            
+            generator.setVirtual(!generator.isVirtual());
+            colors.coloredLegacy(sender, "&eSet virtual mode of the Item Generator &b" + generator.getId() + " &eto " + formatBoolean(generator.isVirtual()));
         } else if (args[0].equalsIgnoreCase("additem")) {
             if (!(args.length > 1)) {
                 colors.coloredLegacy(sender, "&cUsage: /" + label + " " + args[0] + " <params>");
-                List<String> paramsList = List.of(Params.Item.ID.id(), Params.Item.MATERIAL.id(), Params.Item.COOLDOWN.id(), Params.Item.INVULNERABLE.id(), Params.Item.INVENTORY_PICKUP.id(), Params.Item.PERSISTENT.id(), Params.Item.MAX_COUNT.id());
+                List<String> paramsList = List.of(Params.Item.ID.id(), Params.Item.MATERIAL.id(), Params.Item.COOLDOWN.id(), Params.Item.INVULNERABLE.id(), Params.Item.INVENTORY_PICKUP.id(), Params.Item.PERSISTENT.id(), Params.Item.MAX_COUNT.id(), Params.Item.STACK_MERGE.id(), Params.Item.REGION_CAP.id());
                 colors.coloredLegacy(sender, "  &cParams: " + String.join(", ", paramsList));
                 return true;
             }
@@ -348,6 +440,14 @@ public class ItemGeneratorCommand implements CommandExecutor, Listener {
                 flags.add(Flag.INVENTORY_PICKUP);
             }
             
+            if (paramResults.getValue(Params.Item.STACK_MERGE)) {
+                flags.add(Flag.STACK_MERGE);
+            }
+            
+            if (paramResults.getValue(Params.Item.REGION_CAP)) {
+                flags.add(Flag.REGION_CAP);
+            }
+            
             ItemEntry itemEntry = new ItemEntry(material.name().toLowerCase(), ItemBuilders.of(material), cooldown, maxItems, new Position(location.getBlockX(), location.getBlockY(), location.getBlockZ()), flags);
             generator.addItemEntry(itemEntry);
             
@@ -368,9 +468,11 @@ public class ItemGeneratorCommand implements CommandExecutor, Listener {
             msgLines.add("  &ePersistent: &b" + formatBoolean(itemEntry.hasFlag(Flag.PERSISTENT)));
             msgLines.add("  &eInventory Pickup: &b" + formatBoolean(itemEntry.hasFlag(Flag.INVENTORY_PICKUP)));
             msgLines.add("  &eInvulnerable: &b" + formatBoolean(itemEntry.hasFlag(Flag.INVULNERABLE)));
+            msgLines.add("  &eStack Merge: &b" + formatBoolean(itemEntry.hasFlag(Flag.STACK_MERGE)));
+            msgLines.add("  &eRegion Cap: &b" + formatBoolean(itemEntry.hasFlag(Flag.REGION_CAP)));
             
             msgLines.forEach(line -> colors.coloredLegacy(sender, line));
-        } 
+        }
         
         return true;
     }
@@ -379,6 +481,19 @@ public class ItemGeneratorCommand implements CommandExecutor, Listener {
         return v ? "&atrue" : "&cfalse";
     }
     
+    private static void addMetricsLines(List<String> lines, String indent, MetricsSnapshot metrics) {
+        lines.add(indent + "&eSpawns: &b" + metrics.spawns() + " &e(&b" + String.format("%.2f", metrics.spawnRate()) + "&e/s)");
+        lines.add(indent + "&ePickups: &b" + metrics.pickups() + " &e(&b" + String.format("%.2f", metrics.pickupRate()) + "&e/s)");
+        lines.add(indent + "&eLive Items: &b" + metrics.liveItems());
+        lines.add(indent + "&eCap Hits: &b" + metrics.capHits() + " &eof &b" + metrics.fires() + " &efires (&b" + String.format("%.1f", metrics.capHitRate() * 100) + "%&e)");
+        lines.add(indent + "&eDeferred: &b" + metrics.deferred());
+        lines.add(indent + "&eLatency: &b" + String.format("%.1f", metrics.averageLatencyMillis()) + "ms &eavg, &b" + metrics.maxLatencyMillis() + "ms &emax");
+    }
+    
+    private static String formatNanos(long nanos) {
+        return String.format("%.1fus", nanos / 1000.0);
+    }
+    
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent e) {
         selectedGenerators.remove(e.getPlayer().getUniqueId());
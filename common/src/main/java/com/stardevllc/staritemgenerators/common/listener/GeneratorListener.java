@@ -1,35 +1,89 @@
 package com.stardevllc.staritemgenerators.common.listener;
 
+import com.stardevllc.staritemgenerators.common.metrics.GeneratorMetrics;
+import com.stardevllc.staritemgenerators.common.metrics.HandlerMetrics;
 import com.stardevllc.staritemgenerators.common.model.*;
 import com.stardevllc.staritemgenerators.common.model.ItemEntry.Flag;
+import org.bukkit.Chunk;
+import org.bukkit.entity.Entity;
 import org.bukkit.entity.Item;
 import org.bukkit.event.*;
 import org.bukkit.event.entity.*;
 import org.bukkit.event.inventory.InventoryPickupItemEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.plugin.Plugin;
+
+import java.lang.reflect.Method;
+import java.util.List;
 
 public class GeneratorListener implements Listener {
     
     private GeneratorRegistry registry;
     
+    private final HandlerMetrics itemMergeMetrics, inventoryPickupMetrics, itemDamageMetrics, itemDespawnMetrics, chunkLoadMetrics, chunkUnloadMetrics, entitiesLoadMetrics;
+    
     public GeneratorListener(GeneratorRegistry registry) {
         this.registry = registry;
+        
+        GeneratorMetrics metrics = registry.getMetrics();
+        this.itemMergeMetrics = metrics.handler("item_merge");
+        this.inventoryPickupMetrics = metrics.handler("inventory_pickup");
+        this.itemDamageMetrics = metrics.handler("item_damage");
+        this.itemDespawnMetrics = metrics.handler("item_despawn");
+        this.chunkLoadMetrics = metrics.handler("chunk_load");
+        this.chunkUnloadMetrics = metrics.handler("chunk_unload");
+        this.entitiesLoadMetrics = metrics.handler("entities_load");
+    }
+    
+    /**
+     * Registers a handler for the EntitiesLoadEvent, on 1.17 and newer the entities of a chunk load after the chunk so they are not in the {@link ChunkLoadEvent} <br>
+     * The event is newer than the API this is compiled against, so it is registered by reflection and nothing is registered on servers without it
+     *
+     * @param plugin The plugin to register the handler for
+     */
+    @SuppressWarnings("unchecked")
+    public void registerEntitiesLoad(Plugin plugin) {
+        Class<? extends Event> eventClass;
+        Method getChunk, getEntities;
+        try {
+            eventClass = (Class<? extends Event>) Class.forName("org.bukkit.event.world.EntitiesLoadEvent");
+            getChunk = eventClass.getMethod("getChunk");
+            getEntities = eventClass.getMethod("getEntities");
+        } catch (ReflectiveOperationException e) {
+            return;
+        }
+        
+        plugin.getServer().getPluginManager().registerEvent(eventClass, this, EventPriority.MONITOR, (listener, event) -> {
+            if (!eventClass.isInstance(event)) {
+                return;
+            }
+            
+            long start = System.nanoTime();
+            try {
+                Chunk chunk = (Chunk) getChunk.invoke(event);
+                registry.restoreSpawnedItems(chunk.getWorld(), (List<Entity>) getEntities.invoke(event));
+            } catch (ReflectiveOperationException e) {
+                throw new EventException(e);
+            }
+            entitiesLoadMetrics.record(start);
+        }, plugin);
     }
     
     @EventHandler
     public void onItemMerge(ItemMergeEvent e) {
-        for (ItemGenerator generator : registry.values()) {
-            for (SpawnedItem item : generator.getSpawnedItems()) {
-                if (e.getEntity().equals(item.item())) {
-                    e.setCancelled(true);
-                    return;
-                }
-            }
+        long start = System.nanoTime();
+        if (registry.isSpawnedItem(e.getEntity())) {
+            e.setCancelled(true);
         }
+        itemMergeMetrics.record(start);
     }
     
     @EventHandler
     public void onInventoryItemPickup(InventoryPickupItemEvent e) {
+        long start = System.nanoTime();
         handleItemEvent(e.getItem(), Flag.INVENTORY_PICKUP, e);
+        inventoryPickupMetrics.record(start);
     }
     
     @EventHandler
@@ -38,26 +92,54 @@ public class GeneratorListener implements Listener {
             return;
         }
         
+        long start = System.nanoTime();
         handleItemEvent(entity, Flag.INVULNERABLE, e);
+        itemDamageMetrics.record(start);
     }
     
     private void handleItemEvent(Item itemEntity, Flag flag, Cancellable e) {
-        for (ItemGenerator generator : registry.values()) {
-            for (SpawnedItem spawnedItem : generator.getSpawnedItems()) {
-                if (spawnedItem.item().equals(itemEntity)) {
-                    if (spawnedItem.entry().hasFlag(flag)) {
-                        e.setCancelled(true);
-                    } else {
-                        generator.removedSpawnedItem(itemEntity);
-                    }
-                    return;
-                }
-            }
+        SpawnedItem spawnedItem = registry.getSpawnedItem(itemEntity);
+        if (spawnedItem == null) {
+            return;
+        }
+        
+        if (spawnedItem.entry().hasFlag(flag)) {
+            e.setCancelled(true);
+        } else {
+            spawnedItem.generator().removedSpawnedItem(itemEntity);
         }
     }
     
     @EventHandler
     public void onItemDespawn(ItemDespawnEvent e) {
+        long start = System.nanoTime();
         handleItemEvent(e.getEntity(), Flag.PERSISTENT, e);
+        itemDespawnMetrics.record(start);
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityTeleport(EntityTeleportEvent e) {
+        if (!(e.getEntity() instanceof Item item)) {
+            return;
+        }
+        
+        SpawnedItem spawnedItem = registry.getSpawnedItem(item);
+        if (spawnedItem != null) {
+            spawnedItem.generator().updateRegionItem(item, e.getTo());
+        }
+    }
+    
+    @EventHandler
+    public void onChunkLoad(ChunkLoadEvent e) {
+        long start = System.nanoTime();
+        registry.handleChunkLoad(e.getChunk());
+        chunkLoadMetrics.record(start);
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onChunkUnload(ChunkUnloadEvent e) {
+        long start = System.nanoTime();
+        registry.handleChunkUnload(e.getChunk());
+        chunkUnloadMetrics.record(start);
     }
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+package com.stardevllc.staritemgenerators.common.metrics;
+
+import com.stardevllc.staritemgenerators.common.model.ItemEntry;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters for a single {@link ItemEntry} <br>
+ * The counters are striped adders so recording never contends, even when read from another thread. The rates are updated by {@link GeneratorMetrics#sample()}
+ */
+public final class EntryMetrics {
+    
+    /**
+     * The weight of the newest sample in the rates, this gives a one minute moving average with a sample every second
+     */
+    private static final double RATE_ALPHA = 1 - Math.exp(-1.0 / 60.0);
+    
+    private final LongAdder spawns = new LongAdder();
+    private final LongAdder pickups = new LongAdder();
+    private final LongAdder fires = new LongAdder();
+    private final LongAdder capHits = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+    private final LongAdder latencyMillis = new LongAdder();
+    private final LongAccumulator maxLatencyMillis = new LongAccumulator(Math::max, 0);
+    
+    private long lastSpawns, lastPickups;
+    private volatile double spawnRate, pickupRate;
+    private boolean sampled;
+    
+    /**
+     * Records that the scheduler fired the entry
+     *
+     * @param latencyMillis How late the fire was compared to when it was scheduled
+     */
+    public void recordFire(long latencyMillis) {
+        this.fires.increment();
+        if (latencyMillis > 0) {
+            this.latencyMillis.add(latencyMillis);
+            this.maxLatencyMillis.accumulate(latencyMillis);
+        }
+    }
+    
+    /**
+     * Records that the entry was fired while it was at its max items
+     */
+    public void recordCapHit() {
+        this.capHits.increment();
+    }
+    
+    public void recordSpawn() {
+        this.spawns.increment();
+    }
+    
+    public void recordPickup() {
+        this.pickups.increment();
+    }
+    
+    public void recordDeferred() {
+        this.deferred.increment();
+    }
+    
+    /**
+     * Updates the rates from the counters, this must only be called from one thread
+     *
+     * @param seconds The time since the last sample
+     */
+    void sample(double seconds) {
+        long spawns = this.spawns.sum(), pickups = this.pickups.sum();
+        if (seconds > 0) {
+            double spawnRate = (spawns - this.lastSpawns) / seconds, pickupRate = (pickups - this.lastPickups) / seconds;
+            if (this.sampled) {
+                this.spawnRate += RATE_ALPHA * (spawnRate - this.spawnRate);
+                this.pickupRate += RATE_ALPHA * (pickupRate - this.pickupRate);
+            } else {
+                this.spawnRate = spawnRate;
+                this.pickupRate = pickupRate;
+                this.sampled = true;
+            }
+        }
+        
+        this.lastSpawns = spawns;
+        this.lastPickups = pickups;
+    }
+    
+    /**
+     * @param liveItems The amount of items of the entry that are currently alive
+     * @return The current values of the counters
+     */
+    public MetricsSnapshot snapshot(int liveItems) {
+        return new MetricsSnapshot(spawns.sum(), pickups.sum(), fires.sum(), capHits.sum(), deferred.sum(), liveItems, spawnRate, pickupRate, latencyMillis.sum(), maxLatencyMillis.get());
+    }
+    
+    public void reset() {
+        this.spawns.reset();
+        this.pickups.reset();
+        this.fires.reset();
+        this.capHits.reset();
+        this.deferred.reset();
+        this.latencyMillis.reset();
+        this.maxLatencyMillis.reset();
+        this.lastSpawns = 0;
+        this.lastPickups = 0;
+        this.spawnRate = 0;
+        this.pickupRate = 0;
+        this.sampled = false;
+    }
+}
\ No newline at end of file
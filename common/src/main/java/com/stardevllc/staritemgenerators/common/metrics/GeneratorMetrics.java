@@ -0,0 +1,116 @@
+package com.stardevllc.staritemgenerators.common.metrics;
+
+import com.stardevllc.staritemgenerators.common.model.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Access to the metrics of all generators of a {@link GeneratorRegistry} and the time spent in event handlers <br>
+ * This is registered as a service so other plugins can read the metrics
+ */
+public class GeneratorMetrics {
+    
+    private final GeneratorRegistry registry;
+    
+    private final Map<String, HandlerMetrics> handlers = new ConcurrentHashMap<>();
+    
+    private long lastSampleNanos = -1;
+    
+    /**
+     * The entries as of the last sample, so the counters can be read from other threads without touching the generators
+     */
+    private volatile List<EntrySample> entrySamples = List.of();
+    
+    public GeneratorMetrics(GeneratorRegistry registry) {
+        this.registry = registry;
+    }
+    
+    /**
+     * Callers should keep the returned instance instead of calling this for every event
+     *
+     * @param name The name of the handler
+     * @return The metrics for the handler, created if needed
+     */
+    public HandlerMetrics handler(String name) {
+        return handlers.computeIfAbsent(name, HandlerMetrics::new);
+    }
+    
+    /**
+     * @return The handler metrics sorted by name
+     */
+    public List<HandlerMetrics> getHandlers() {
+        List<HandlerMetrics> handlers = new ArrayList<>(this.handlers.values());
+        handlers.sort(Comparator.comparing(HandlerMetrics::getName));
+        return handlers;
+    }
+    
+    /**
+     * Updates the rates of all entries and the entry samples, this should be called on the main thread about once a second
+     */
+    public void sample() {
+        long now = System.nanoTime();
+        double seconds = lastSampleNanos == -1 ? 0 : (now - lastSampleNanos) / 1_000_000_000.0;
+        lastSampleNanos = now;
+        List<EntrySample> samples = new ArrayList<>();
+        for (ItemGenerator generator : registry.getGenerators()) {
+            for (ItemEntry entry : generator.getItemEntries()) {
+                entry.getMetrics().sample(seconds);
+                samples.add(new EntrySample(generator.getId(), entry.getId(), entry.getMetrics(), generator.getSpawnedItemsCount(entry)));
+            }
+        }
+        
+        this.entrySamples = Collections.unmodifiableList(samples);
+    }
+    
+    /**
+     * This is safe to use from any thread, the counters of the metrics are live while the live items are from the last sample
+     *
+     * @return The entries of all generators as of the last sample
+     */
+    public List<EntrySample> getEntrySamples() {
+        return entrySamples;
+    }
+    
+    /**
+     * @return The combined metrics of all generators
+     */
+    public MetricsSnapshot getTotal() {
+        MetricsSnapshot total = MetricsSnapshot.EMPTY;
+        for (ItemGenerator generator : registry.getGenerators()) {
+            total = total.plus(generator.getMetricsSnapshot());
+        }
+        
+        return total;
+    }
+    
+    public void reset() {
+        for (ItemGenerator generator : registry.getGenerators()) {
+            for (ItemEntry entry : generator.getItemEntries()) {
+                entry.getMetrics().reset();
+            }
+        }
+        
+        for (HandlerMetrics handler : handlers.values()) {
+            handler.reset();
+        }
+    }
+    
+    public GeneratorRegistry getRegistry() {
+        return registry;
+    }
+    
+    /**
+     * An entry as of the last sample
+     *
+     * @param generatorId The id of the generator
+     * @param entryId     The id of the entry
+     * @param metrics     The metrics of the entry
+     * @param liveItems   The amount of items of the entry that were alive
+     */
+    public record EntrySample(String generatorId, String entryId, EntryMetrics metrics, int liveItems) {
+        public MetricsSnapshot snapshot() {
+            return metrics.snapshot(liveItems);
+        }
+    }
+}
\ No newline at end of file
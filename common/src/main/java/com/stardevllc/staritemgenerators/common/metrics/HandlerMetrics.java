@@ -0,0 +1,57 @@
+package com.stardevllc.staritemgenerators.common.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The time spent in a single event handler
+ */
+public final class HandlerMetrics {
+    
+    private final String name;
+    
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    
+    HandlerMetrics(String name) {
+        this.name = name;
+    }
+    
+    /**
+     * @param startNanos The {@link System#nanoTime()} from when the handler started
+     */
+    public void record(long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        this.calls.increment();
+        this.nanos.add(elapsed);
+        this.maxNanos.accumulate(elapsed);
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public long getCalls() {
+        return calls.sum();
+    }
+    
+    public long getTotalNanos() {
+        return nanos.sum();
+    }
+    
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+    
+    public long getAverageNanos() {
+        long calls = getCalls();
+        return calls > 0 ? getTotalNanos() / calls : 0;
+    }
+    
+    public void reset() {
+        this.calls.reset();
+        this.nanos.reset();
+        this.maxNanos.reset();
+    }
+}
\ No newline at end of file
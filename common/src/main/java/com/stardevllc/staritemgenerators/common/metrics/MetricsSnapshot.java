@@ -0,0 +1,39 @@
+package com.stardevllc.staritemgenerators.common.metrics;
+
+/**
+ * The values of the metrics of an entry, or the combined values of several entries
+ *
+ * @param spawns             The amount of items spawned, including virtual items
+ * @param pickups            The amount of items picked up
+ * @param fires              The amount of times the scheduler fired the entry
+ * @param capHits            The amount of fires where the entry was at its max items
+ * @param deferred           The amount of times a fire was deferred to a later tick because of the spawn budget
+ * @param liveItems          The amount of items currently alive, including virtual items
+ * @param spawnRate          The spawns per second as a one minute moving average
+ * @param pickupRate         The pickups per second as a one minute moving average
+ * @param totalLatencyMillis The total time that fires were late compared to when they were scheduled
+ * @param maxLatencyMillis   The most that a single fire was late
+ */
+public record MetricsSnapshot(long spawns, long pickups, long fires, long capHits, long deferred, int liveItems, double spawnRate, double pickupRate, long totalLatencyMillis, long maxLatencyMillis) {
+    
+    public static final MetricsSnapshot EMPTY = new MetricsSnapshot(0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+    
+    /**
+     * @return The fraction of fires that were at the max items, between 0 and 1
+     */
+    public double capHitRate() {
+        return fires > 0 ? (double) capHits / fires : 0;
+    }
+    
+    public double averageLatencyMillis() {
+        return fires > 0 ? (double) totalLatencyMillis / fires : 0;
+    }
+    
+    /**
+     * @param other The other snapshot
+     * @return A snapshot with the values of both snapshots added together, the max latency is the highest of both
+     */
+    public MetricsSnapshot plus(MetricsSnapshot other) {
+        return new MetricsSnapshot(spawns + other.spawns, pickups + other.pickups, fires + other.fires, capHits + other.capHits, deferred + other.deferred, liveItems + other.liveItems, spawnRate + other.spawnRate, pickupRate + other.pickupRate, totalLatencyMillis + other.totalLatencyMillis, Math.max(maxLatencyMillis, other.maxLatencyMillis));
+    }
+}
\ No newline at end of file
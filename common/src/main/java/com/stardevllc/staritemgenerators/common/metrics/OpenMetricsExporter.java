@@ -0,0 +1,232 @@
+package com.stardevllc.staritemgenerators.common.metrics;
+
+import com.stardevllc.staritemgenerators.common.metrics.GeneratorMetrics.EntrySample;
+import com.stardevllc.staritemgenerators.common.model.listener.AsyncListenerDispatcher;
+import com.stardevllc.staritemgenerators.common.scheduler.ExecutionBackend;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.ToLongFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Renders the generator metrics in the OpenMetrics text format, served over HTTP or written to a file <br>
+ * Rendering only reads the entry samples and the counters, so it is done on the HTTP or async thread instead of the main thread
+ */
+public class OpenMetricsExporter {
+    
+    public static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+    
+    private static final String PREFIX = "staritemgenerators_";
+    
+    private final GeneratorMetrics metrics;
+    private final Logger logger;
+    
+    private HttpServer httpServer;
+    private ExecutorService httpExecutor;
+    private ExecutionBackend.Task fileTask;
+    
+    public OpenMetricsExporter(GeneratorMetrics metrics, Logger logger) {
+        this.metrics = metrics;
+        this.logger = logger;
+    }
+    
+    /**
+     * @return The current metrics in the OpenMetrics text format
+     */
+    public String render() {
+        List<EntrySample> samples = metrics.getEntrySamples();
+        List<MetricsSnapshot> snapshots = new ArrayList<>(samples.size());
+        for (EntrySample sample : samples) {
+            snapshots.add(sample.snapshot());
+        }
+        
+        StringBuilder sb = new StringBuilder(256 + samples.size() * 512);
+        entryFamily(sb, "spawns", "counter", "Items spawned by the entry, including virtual items", samples, snapshots, MetricsSnapshot::spawns);
+        entryFamily(sb, "pickups", "counter", "Items of the entry picked up by players", samples, snapshots, MetricsSnapshot::pickups);
+        entryFamily(sb, "fires", "counter", "Times the scheduler fired the entry", samples, snapshots, MetricsSnapshot::fires);
+        entryFamily(sb, "cap_hits", "counter", "Fires where the entry was at its max items", samples, snapshots, MetricsSnapshot::capHits);
+        entryFamily(sb, "deferred_spawns", "counter", "Fires deferred to a later tick because of the spawn budget", samples, snapshots, MetricsSnapshot::deferred);
+        entryFamily(sb, "live_items", "gauge", "Items of the entry currently alive, including virtual items", samples, snapshots, MetricsSnapshot::liveItems);
+        
+        header(sb, "fire_latency_seconds", "counter", "Total time fires were late compared to when they were scheduled");
+        for (int i = 0; i < samples.size(); i++) {
+            entrySample(sb, "fire_latency_seconds_total", samples.get(i)).append(snapshots.get(i).totalLatencyMillis() / 1000.0).append('\n');
+        }
+        
+        List<HandlerMetrics> handlers = metrics.getHandlers();
+        header(sb, "handler_calls", "counter", "Calls of the event handlers");
+        for (HandlerMetrics handler : handlers) {
+            handlerSample(sb, "handler_calls_total", handler).append(handler.getCalls()).append('\n');
+        }
+        
+        header(sb, "handler_seconds", "counter", "Time spent in the event handlers");
+        for (HandlerMetrics handler : handlers) {
+            handlerSample(sb, "handler_seconds_total", handler).append(handler.getTotalNanos() / 1_000_000_000.0).append('\n');
+        }
+        
+        AsyncListenerDispatcher dispatcher = metrics.getRegistry().getListenerDispatcher();
+        header(sb, "async_listener_events", "counter", "Events queued for async entry listeners");
+        sb.append(PREFIX).append("async_listener_events_total ").append(dispatcher.getSubmitted()).append('\n');
+        header(sb, "async_listener_events_dropped", "counter", "Events for async entry listeners dropped because the queue was full");
+        sb.append(PREFIX).append("async_listener_events_dropped_total ").append(dispatcher.getDropped()).append('\n');
+        header(sb, "async_listener_failures", "counter", "Exceptions thrown by async entry listeners");
+        sb.append(PREFIX).append("async_listener_failures_total ").append(dispatcher.getFailures()).append('\n');
+        header(sb, "async_listener_queued", "gauge", "Events waiting to be delivered to async entry listeners");
+        sb.append(PREFIX).append("async_listener_queued ").append(dispatcher.getQueued()).append('\n');
+        
+        sb.append("# EOF\n");
+        return sb.toString();
+    }
+    
+    private static void entryFamily(StringBuilder sb, String name, String type, String help, List<EntrySample> samples, List<MetricsSnapshot> snapshots, ToLongFunction<MetricsSnapshot> value) {
+        header(sb, name, type, help);
+        String sampleName = type.equals("counter") ? name + "_total" : name;
+        for (int i = 0; i < samples.size(); i++) {
+            entrySample(sb, sampleName, samples.get(i)).append(value.applyAsLong(snapshots.get(i))).append('\n');
+        }
+    }
+    
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+        sb.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+    }
+    
+    private static StringBuilder entrySample(StringBuilder sb, String name, EntrySample sample) {
+        sb.append(PREFIX).append(name).append("{generator=\"");
+        escape(sb, sample.generatorId());
+        sb.append("\",entry=\"");
+        escape(sb, sample.entryId());
+        return sb.append("\"} ");
+    }
+    
+    private static StringBuilder handlerSample(StringBuilder sb, String name, HandlerMetrics handler) {
+        sb.append(PREFIX).append(name).append("{handler=\"");
+        escape(sb, handler.getName());
+        return sb.append("\"} ");
+    }
+    
+    private static void escape(StringBuilder sb, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> sb.append("\\\\");
+                case '"' -> sb.append("\\\"");
+                case '\n' -> sb.append("\\n");
+                default -> sb.append(c);
+            }
+        }
+    }
+    
+    /**
+     * Serves the metrics at {@code /metrics} on a background thread
+     *
+     * @param host The host to bind to, use a loopback address unless the endpoint should be reachable from other machines
+     * @param port The port
+     * @throws IOException If the server could not be started
+     */
+    public void startHttp(String host, int port) throws IOException {
+        stopHttp();
+        this.httpExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "StarItemGenerators-Metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.httpServer = HttpServer.create(new InetSocketAddress(host, port), 0);
+        this.httpServer.createContext("/metrics", this::handleScrape);
+        this.httpServer.setExecutor(httpExecutor);
+        this.httpServer.start();
+    }
+    
+    private void handleScrape(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            if (method.equals("HEAD")) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Could not render the generator metrics", e);
+        }
+    }
+    
+    public void stopHttp() {
+        if (this.httpServer != null) {
+            this.httpServer.stop(0);
+            this.httpServer = null;
+        }
+        
+        if (this.httpExecutor != null) {
+            this.httpExecutor.shutdownNow();
+            this.httpExecutor = null;
+        }
+    }
+    
+    /**
+     * Writes the metrics to a file on an interval from an async task, for collectors that read files like the node exporter textfile collector
+     *
+     * @param execution     The backend that runs the task
+     * @param file          The file to write
+     * @param intervalTicks The interval in ticks
+     */
+    public void startFile(ExecutionBackend execution, File file, long intervalTicks) {
+        stopFile();
+        if (intervalTicks > 0) {
+            this.fileTask = execution.runAsyncTimer(() -> writeFile(file), intervalTicks, intervalTicks);
+        }
+    }
+    
+    /**
+     * Writes the metrics to the file, a temporary file is written and moved over the file so readers never see a partial file
+     *
+     * @param file The file
+     */
+    public void writeFile(File file) {
+        File tempFile = new File(file.getPath() + ".tmp");
+        try {
+            if (file.getParentFile() != null) {
+                file.getParentFile().mkdirs();
+            }
+            
+            Files.writeString(tempFile.toPath(), render(), StandardCharsets.UTF_8);
+            try {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Could not write the generator metrics to " + file.getPath(), e);
+        }
+    }
+    
+    public void stopFile() {
+        if (this.fileTask != null) {
+            this.fileTask.cancel();
+            this.fileTask = null;
+        }
+    }
+    
+    public void close() {
+        stopHttp();
+        stopFile();
+    }
+}
\ No newline at end of file
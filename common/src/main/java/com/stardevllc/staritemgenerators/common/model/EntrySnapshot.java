@@ -0,0 +1,24 @@
+package com.stardevllc.staritemgenerators.common.model;
+
+import com.stardevllc.staritemgenerators.common.model.ItemEntry.Flag;
+import com.stardevllc.starmclib.Position;
+
+import java.util.Set;
+
+/**
+ * An immutable copy of the state of an {@link ItemEntry}, see {@link ItemGenerator#snapshot()}
+ *
+ * @param id            The id of the entry
+ * @param cooldown      The cooldown in milliseconds
+ * @param maxItems      The max items
+ * @param spawnPosition The spawn position
+ * @param flags         The flags
+ * @param spawnedItems  The amount of spawned items including virtual items
+ * @param spawnedAmount The total item amount of the spawned items including virtual items
+ * @param virtualItems  The amount of items stored as counters
+ */
+public record EntrySnapshot(String id, long cooldown, int maxItems, Position spawnPosition, Set<Flag> flags, int spawnedItems, int spawnedAmount, int virtualItems) {
+    public boolean hasFlag(Flag flag) {
+        return flags.contains(flag);
+    }
+}
\ No newline at end of file
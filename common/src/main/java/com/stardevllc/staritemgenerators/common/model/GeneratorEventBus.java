@@ -0,0 +1,215 @@
+package com.stardevllc.staritemgenerators.common.model;
+
+import com.stardevllc.staritemgenerators.common.model.ItemEntry.Flag;
+import com.stardevllc.staritemgenerators.common.model.listener.AsyncListenerDispatcher;
+import com.stardevllc.staritemgenerators.common.model.listener.DispatchMode;
+import com.stardevllc.staritemgenerators.common.model.listener.ItemPickupListener;
+import com.stardevllc.staritemgenerators.common.model.listener.ItemSpawnListener;
+import org.bukkit.entity.Item;
+import org.bukkit.entity.LivingEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spawn and pickup listeners for every entry of a {@link GeneratorRegistry}, so plugins do not need to add listeners to each entry <br>
+ * Subscriptions can be limited to a generator, an entry or a flag. Every entry caches a dispatch table with the listeners that match it, so publishing an event only calls the matching listeners without checking filters. The tables are built again when subscriptions change
+ */
+public class GeneratorEventBus {
+    
+    private static final ItemSpawnListener[] NO_SPAWN_LISTENERS = new ItemSpawnListener[0];
+    private static final ItemPickupListener[] NO_PICKUP_LISTENERS = new ItemPickupListener[0];
+    
+    //These do not capture anything, so publishing to async listeners only creates the queued event
+    private static final AsyncListenerDispatcher.EventCall<ItemSpawnListener> SPAWN_CALL = (listener, entity, item, entry, generator) -> listener.onSpawn(item, entry, generator);
+    private static final AsyncListenerDispatcher.EventCall<ItemPickupListener> PICKUP_CALL = ItemPickupListener::onPickup;
+    
+    private final GeneratorRegistry registry;
+    
+    /**
+     * Guarded by this, subscriptions are rarely changed compared to how often events are published
+     */
+    private final List<Subscription> subscriptions = new ArrayList<>();
+    
+    /**
+     * Changed with every subscription change, tables built for an older version are built again
+     */
+    private volatile int version;
+    
+    GeneratorEventBus(GeneratorRegistry registry) {
+        this.registry = registry;
+    }
+    
+    public Subscription subscribeSpawn(ItemSpawnListener listener, Filter filter) {
+        return subscribeSpawn(listener, filter, DispatchMode.SYNC);
+    }
+    
+    /**
+     * @param listener The listener
+     * @param filter   The entries the listener is called for
+     * @param mode     If the listener is called right away or on a worker thread
+     * @return The subscription, this is used to remove the listener
+     */
+    public Subscription subscribeSpawn(ItemSpawnListener listener, Filter filter, DispatchMode mode) {
+        return add(new Subscription(this, listener, null, filter, mode));
+    }
+    
+    public Subscription subscribePickup(ItemPickupListener listener, Filter filter) {
+        return subscribePickup(listener, filter, DispatchMode.SYNC);
+    }
+    
+    /**
+     * @param listener The listener
+     * @param filter   The entries the listener is called for
+     * @param mode     If the listener is called right away or on a worker thread
+     * @return The subscription, this is used to remove the listener
+     */
+    public Subscription subscribePickup(ItemPickupListener listener, Filter filter, DispatchMode mode) {
+        return add(new Subscription(this, null, listener, filter, mode));
+    }
+    
+    private synchronized Subscription add(Subscription subscription) {
+        this.subscriptions.add(subscription);
+        this.version++;
+        return subscription;
+    }
+    
+    public synchronized void unsubscribe(Subscription subscription) {
+        if (this.subscriptions.remove(subscription)) {
+            this.version++;
+        }
+    }
+    
+    /**
+     * @return The amount of subscriptions
+     */
+    public synchronized int getSubscriptionCount() {
+        return this.subscriptions.size();
+    }
+    
+    void publishSpawn(Item item, ItemEntry entry, ItemGenerator generator) {
+        DispatchTable table = getTable(entry);
+        ItemSpawnListener[] listeners = table.spawnListeners();
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i].onSpawn(item, entry, generator);
+        }
+        
+        if (table.asyncSpawnListeners().length > 0) {
+            registry.getListenerDispatcher().dispatch(generator.getId(), table.asyncSpawnListeners(), SPAWN_CALL, null, item, entry, generator);
+        }
+    }
+    
+    void publishPickup(LivingEntity entity, Item item, ItemEntry entry, ItemGenerator generator) {
+        DispatchTable table = getTable(entry);
+        ItemPickupListener[] listeners = table.pickupListeners();
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i].onPickup(entity, item, entry, generator);
+        }
+        
+        if (table.asyncPickupListeners().length > 0) {
+            registry.getListenerDispatcher().dispatch(generator.getId(), table.asyncPickupListeners(), PICKUP_CALL, entity, item, entry, generator);
+        }
+    }
+    
+    private DispatchTable getTable(ItemEntry entry) {
+        DispatchTable table = entry.dispatchTable;
+        if (table == null || table.version() != this.version) {
+            table = buildTable(entry);
+            entry.dispatchTable = table;
+        }
+        
+        return table;
+    }
+    
+    private synchronized DispatchTable buildTable(ItemEntry entry) {
+        List<ItemSpawnListener> spawn = new ArrayList<>(), asyncSpawn = new ArrayList<>();
+        List<ItemPickupListener> pickup = new ArrayList<>(), asyncPickup = new ArrayList<>();
+        for (Subscription subscription : this.subscriptions) {
+            if (!subscription.filter.matches(entry)) {
+                continue;
+            }
+            
+            boolean async = subscription.mode == DispatchMode.ASYNC;
+            if (subscription.spawnListener != null) {
+                (async ? asyncSpawn : spawn).add(subscription.spawnListener);
+            } else {
+                (async ? asyncPickup : pickup).add(subscription.pickupListener);
+            }
+        }
+        
+        return new DispatchTable(this.version, spawn.toArray(NO_SPAWN_LISTENERS), asyncSpawn.toArray(NO_SPAWN_LISTENERS), pickup.toArray(NO_PICKUP_LISTENERS), asyncPickup.toArray(NO_PICKUP_LISTENERS));
+    }
+    
+    /**
+     * The listeners that match an entry, as of a version of the subscriptions
+     */
+    record DispatchTable(int version, ItemSpawnListener[] spawnListeners, ItemSpawnListener[] asyncSpawnListeners, ItemPickupListener[] pickupListeners, ItemPickupListener[] asyncPickupListeners) {
+    }
+    
+    /**
+     * Limits a subscription to some entries, null values match everything
+     *
+     * @param generatorId The id of the generator
+     * @param entryId     The id of the entry
+     * @param flag        A flag the entry must have
+     */
+    public record Filter(String generatorId, String entryId, Flag flag) {
+        
+        public static final Filter ALL = new Filter(null, null, null);
+        
+        public static Filter generator(String generatorId) {
+            return new Filter(generatorId, null, null);
+        }
+        
+        public static Filter entry(String generatorId, String entryId) {
+            return new Filter(generatorId, entryId, null);
+        }
+        
+        public static Filter flag(Flag flag) {
+            return new Filter(null, null, flag);
+        }
+        
+        public boolean matches(ItemEntry entry) {
+            if (generatorId != null && (entry.getGenerator() == null || !entry.getGenerator().getId().equalsIgnoreCase(generatorId))) {
+                return false;
+            }
+            
+            if (entryId != null && !entry.getId().equalsIgnoreCase(entryId)) {
+                return false;
+            }
+            
+            return flag == null || entry.hasFlag(flag);
+        }
+    }
+    
+    public static final class Subscription {
+        private final GeneratorEventBus bus;
+        private final ItemSpawnListener spawnListener;
+        private final ItemPickupListener pickupListener;
+        private final Filter filter;
+        private final DispatchMode mode;
+        
+        private Subscription(GeneratorEventBus bus, ItemSpawnListener spawnListener, ItemPickupListener pickupListener, Filter filter, DispatchMode mode) {
+            this.bus = bus;
+            this.spawnListener = spawnListener;
+            this.pickupListener = pickupListener;
+            this.filter = filter != null ? filter : Filter.ALL;
+            this.mode = mode;
+        }
+        
+        public Filter getFilter() {
+            return filter;
+        }
+        
+        public DispatchMode getMode() {
+            return mode;
+        }
+        
+        /**
+         * Removes the listener from the bus
+         */
+        public void cancel() {
+            bus.unsubscribe(this);
+        }
+    }
+}
\ No newline at end of file
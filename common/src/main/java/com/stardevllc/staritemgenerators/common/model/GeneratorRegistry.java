@@ -1,39 +1,620 @@
 package com.stardevllc.staritemgenerators.common.model;
 
+import com.stardevllc.staritemgenerators.common.metrics.GeneratorMetrics;
+import com.stardevllc.staritemgenerators.common.model.listener.AsyncListenerDispatcher;
+import com.stardevllc.staritemgenerators.common.scheduler.ExecutionBackend;
+import com.stardevllc.staritemgenerators.common.scheduler.SpawnScheduler;
 import com.stardevllc.starlib.clock.ClockManager;
 import com.stardevllc.starlib.injector.FieldInjector;
 import com.stardevllc.starlib.injector.SimpleFieldInjector;
 import com.stardevllc.starlib.objects.registry.Registry;
 import com.stardevllc.starlib.objects.registry.RegistryObject;
+import com.stardevllc.starmclib.Position;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Item;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
 
 public class GeneratorRegistry extends Registry<String, ItemGenerator> {
     
     private final ClockManager clockManager;
     
+    private final SpawnScheduler spawnScheduler;
+    
+    /**
+     * The backend the spawn schedulers run on, or null if the caller ticks the spawn scheduler itself
+     */
+    private final ExecutionBackend execution;
+    
+    /**
+     * On region threaded servers every generator gets its own spawn scheduler that is ticked by the region that owns the generator, as a single scheduler cannot spawn items in every region
+     */
+    private final Map<ItemGenerator, RegionSpawnScheduler> regionSchedulers = new ConcurrentHashMap<>();
+    
     private final FieldInjector injector;
     
+    private final GeneratorMetrics metrics;
+    
+    /**
+     * Delivers events to the entry listeners that are called asynchronously
+     */
+    private final AsyncListenerDispatcher listenerDispatcher = new AsyncListenerDispatcher(Logger.getLogger("StarItemGenerators"));
+    private final GeneratorEventBus eventBus = new GeneratorEventBus(this);
+    
+    /**
+     * Index of all spawned items across all generators, keyed by the entity unique id <br>
+     * This allows events to resolve the owning generator and entry with a single lookup. It is concurrent so async plugins can look up items
+     */
+    private final Map<UUID, SpawnedItem> spawnedItemIndex = new ConcurrentHashMap<>();
+    
+    /**
+     * Index of initialized entries by the world unique id and then the key of the chunk that contains their spawn position <br>
+     * The chunk indexes are changed with atomic map operations and the lists are copy on write, so chunk events from different region threads can use them
+     */
+    private final Map<UUID, Map<Long, List<ItemEntry>>> entriesByChunk = new ConcurrentHashMap<>();
+    
+    /**
+     * Index of initialized generators by the world unique id and then the key of every chunk that their region overlaps <br>
+     * This allows location queries to only check the generators near the location instead of every generator
+     */
+    private final Map<UUID, Map<Long, List<ItemGenerator>>> regionsByChunk = new ConcurrentHashMap<>();
+    
+    /**
+     * The chunks each generator was indexed with, so it can be removed even if its bounds or world changed since
+     */
+    private final Map<ItemGenerator, IndexedRegion> indexedRegions = new ConcurrentHashMap<>();
+    
+    /**
+     * Generators that changed since they were last saved, so autosaves do not need to look at every generator <br>
+     * This is concurrent as failed saves mark generators dirty again from the save thread
+     */
+    private final Set<ItemGenerator> dirtyGenerators = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * A concurrent copy of the registered generators keyed by id, the map of the base registry is not safe to read while a command registers a generator <br>
+     * Region threads, async listeners and the metrics use this through {@link #getGenerator(String)} and {@link #getGenerators()}
+     */
+    private final Map<String, ItemGenerator> generatorsById = new ConcurrentHashMap<>();
+    
+    /**
+     * Called after a generator was removed with {@link #removeGenerator(ItemGenerator)}, the storage uses this to delete the saved file
+     */
+    private final List<Consumer<ItemGenerator>> removeListeners = new CopyOnWriteArrayList<>();
+    
     public GeneratorRegistry(ClockManager clockManager) {
+        this(clockManager, new SpawnScheduler());
+    }
+    
+    public GeneratorRegistry(ClockManager clockManager, SpawnScheduler spawnScheduler) {
+        this(clockManager, spawnScheduler, null);
+    }
+    
+    public GeneratorRegistry(ClockManager clockManager, SpawnScheduler spawnScheduler, ExecutionBackend execution) {
         super(ItemGenerator::getId);
         this.clockManager = clockManager;
+        this.spawnScheduler = spawnScheduler;
+        this.execution = execution;
         
         this.injector = new SimpleFieldInjector();
         this.injector.set(this);
         this.injector.set(clockManager);
+        this.injector.set(spawnScheduler);
+        
+        this.metrics = new GeneratorMetrics(this);
     }
     
     @Override
-    public RegistryObject<String, ItemGenerator> register(RegistryObject<String, ItemGenerator> registryObject) {
+    public synchronized RegistryObject<String, ItemGenerator> register(RegistryObject<String, ItemGenerator> registryObject) {
         injector.inject(registryObject.get());
-        return super.register(registryObject);
+        if (registryObject.get().isDirty()) {
+            this.dirtyGenerators.add(registryObject.get());
+        }
+        RegistryObject<String, ItemGenerator> registered = super.register(registryObject);
+        this.generatorsById.put(registryObject.get().getId(), registryObject.get());
+        return registered;
     }
     
     @Override
-    public RegistryObject<String, ItemGenerator> register(String key, ItemGenerator value) {
+    public synchronized RegistryObject<String, ItemGenerator> register(String key, ItemGenerator value) {
         injector.inject(value);
-        return super.register(key, value);
+        if (value.isDirty()) {
+            this.dirtyGenerators.add(value);
+        }
+        RegistryObject<String, ItemGenerator> registered = super.register(key, value);
+        this.generatorsById.put(key, value);
+        return registered;
+    }
+    
+    /**
+     * This is safe to use from any thread
+     *
+     * @param id The id of the generator
+     * @return The generator, or null if no generator with the id is registered
+     */
+    public ItemGenerator getGenerator(String id) {
+        return this.generatorsById.get(id);
+    }
+    
+    /**
+     * This is safe to use from any thread
+     *
+     * @return A view of the registered generators
+     */
+    public Collection<ItemGenerator> getGenerators() {
+        return Collections.unmodifiableCollection(this.generatorsById.values());
     }
     
     public ClockManager getClockManager() {
         return clockManager;
     }
+    
+    public SpawnScheduler getSpawnScheduler() {
+        return spawnScheduler;
+    }
+    
+    public ExecutionBackend getExecution() {
+        return execution;
+    }
+    
+    /**
+     * @return If generators have their own spawn scheduler on the region thread that owns them instead of sharing {@link #getSpawnScheduler()}
+     */
+    public boolean isRegionThreaded() {
+        return execution != null && execution.isRegionThreaded();
+    }
+    
+    /**
+     * @param world  The world
+     * @param chunkX The chunk x
+     * @param chunkZ The chunk z
+     * @return If the current thread can spawn items in the chunk, this is always true when the server is not region threaded
+     */
+    public boolean isOwnedByCurrentThread(World world, int chunkX, int chunkZ) {
+        return !isRegionThreaded() || execution.isOwnedByCurrentThread(world, chunkX, chunkZ);
+    }
+    
+    /**
+     * @param entity The entity
+     * @return If the current thread can read the entity, this is always true when the server is not region threaded
+     */
+    public boolean isOwnedByCurrentThread(Entity entity) {
+        return !isRegionThreaded() || execution.isOwnedByCurrentThread(entity);
+    }
+    
+    /**
+     * Runs a task on the thread that owns the chunk, this runs the task right away when the server is not region threaded
+     *
+     * @param world  The world
+     * @param chunkX The chunk x
+     * @param chunkZ The chunk z
+     * @param task   The task
+     */
+    public void runAt(World world, int chunkX, int chunkZ, Runnable task) {
+        if (isRegionThreaded()) {
+            execution.runAt(world, chunkX, chunkZ, task);
+        } else {
+            task.run();
+        }
+    }
+    
+    /**
+     * Gets the spawn scheduler for a generator that is being initialized. On region threaded servers this creates a scheduler for the generator that is ticked on the region that owns the spawn position of its first entry, or its center if it has no entries <br>
+     * The entries of a generator share its scheduler, so they should be close enough to be in the same region. Entries in chunks owned by another region hand their spawns off to that region
+     *
+     * @param generator The generator
+     * @return The spawn scheduler
+     */
+    SpawnScheduler acquireSpawnScheduler(ItemGenerator generator) {
+        if (!isRegionThreaded()) {
+            return this.spawnScheduler;
+        }
+        
+        releaseSpawnScheduler(generator);
+        
+        List<ItemEntry> entries = generator.getItemEntries();
+        Position anchor = !entries.isEmpty() ? entries.get(0).getSpawnPosition() : new Position((generator.getBoundsMin().getBlockX() + generator.getBoundsMax().getBlockX()) / 2, 0, (generator.getBoundsMin().getBlockZ() + generator.getBoundsMax().getBlockZ()) / 2);
+        
+        SpawnScheduler scheduler = new SpawnScheduler(this.spawnScheduler.getClock());
+        scheduler.setMaxSpawnsPerTick(this.spawnScheduler.getMaxSpawnsPerTick());
+        scheduler.setMaxNanosPerTick(this.spawnScheduler.getMaxNanosPerTick());
+        scheduler.setPhaseSpread(this.spawnScheduler.getPhaseSpread());
+        scheduler.setPreparer(this.spawnScheduler.getPreparer());
+        scheduler.setPrepareAhead(this.spawnScheduler.getPrepareAhead());
+        
+        ExecutionBackend.Task task = execution.runRegionTimer(generator.getWorld(), anchor.getBlockX() >> 4, anchor.getBlockZ() >> 4, scheduler, 1L, 1L);
+        this.regionSchedulers.put(generator, new RegionSpawnScheduler(scheduler, task));
+        return scheduler;
+    }
+    
+    /**
+     * Stops the spawn scheduler of a generator on region threaded servers, this is called after the entries of the generator are reset
+     *
+     * @param generator The generator
+     */
+    void releaseSpawnScheduler(ItemGenerator generator) {
+        RegionSpawnScheduler regionScheduler = this.regionSchedulers.remove(generator);
+        if (regionScheduler != null) {
+            regionScheduler.task().cancel();
+        }
+    }
+    
+    /**
+     * Deinitializes a generator and removes it from this registry, the async listener lane of the generator is released and the remove listeners are called <br>
+     * The items spawned by the generator stay in the world, see {@link ItemGenerator#clearSpawnedItems()}
+     *
+     * @param generator The generator
+     */
+    public void removeGenerator(ItemGenerator generator) {
+        generator.deinit();
+        synchronized (this) {
+            unregister(generator.getId());
+            this.generatorsById.remove(generator.getId(), generator);
+        }
+        //Deinit marks the generator dirty, it must not be saved again after it is removed
+        this.dirtyGenerators.remove(generator);
+        this.listenerDispatcher.removeLane(generator.getId());
+        for (Consumer<ItemGenerator> listener : this.removeListeners) {
+            listener.accept(generator);
+        }
+    }
+    
+    /**
+     * @param listener Called with every generator that is removed with {@link #removeGenerator(ItemGenerator)}
+     */
+    public void addRemoveListener(Consumer<ItemGenerator> listener) {
+        this.removeListeners.add(listener);
+    }
+    
+    /**
+     * @return The spawn schedulers of the generators on region threaded servers, this is empty on normal servers
+     */
+    public Collection<SpawnScheduler> getRegionSpawnSchedulers() {
+        List<SpawnScheduler> schedulers = new ArrayList<>(this.regionSchedulers.size());
+        for (RegionSpawnScheduler regionScheduler : this.regionSchedulers.values()) {
+            schedulers.add(regionScheduler.scheduler());
+        }
+        
+        return schedulers;
+    }
+    
+    public GeneratorMetrics getMetrics() {
+        return metrics;
+    }
+    
+    public AsyncListenerDispatcher getListenerDispatcher() {
+        return listenerDispatcher;
+    }
+    
+    /**
+     * @return The bus for spawn and pickup listeners of all generators in this registry
+     */
+    public GeneratorEventBus getEventBus() {
+        return eventBus;
+    }
+    
+    public SpawnedItem getSpawnedItem(Entity entity) {
+        if (entity == null) {
+            return null;
+        }
+        
+        return getSpawnedItem(entity.getUniqueId());
+    }
+    
+    public SpawnedItem getSpawnedItem(UUID uniqueId) {
+        return this.spawnedItemIndex.get(uniqueId);
+    }
+    
+    public boolean isSpawnedItem(Entity entity) {
+        return entity != null && this.spawnedItemIndex.containsKey(entity.getUniqueId());
+    }
+    
+    void markDirty(ItemGenerator generator) {
+        this.dirtyGenerators.add(generator);
+    }
+    
+    /**
+     * Removes and returns the generators that changed since they were last saved. Generators that were cleaned or removed from this registry in the meantime are skipped
+     *
+     * @return The dirty generators
+     */
+    public List<ItemGenerator> drainDirtyGenerators() {
+        List<ItemGenerator> dirty = new ArrayList<>(this.dirtyGenerators.size());
+        Iterator<ItemGenerator> iterator = this.dirtyGenerators.iterator();
+        while (iterator.hasNext()) {
+            ItemGenerator generator = iterator.next();
+            iterator.remove();
+            if (generator.isDirty() && getGenerator(generator.getId()) == generator) {
+                dirty.add(generator);
+            }
+        }
+        
+        return dirty;
+    }
+    
+    public static long getChunkKey(int chunkX, int chunkZ) {
+        return (chunkX & 0xFFFFFFFFL) | ((chunkZ & 0xFFFFFFFFL) << 32);
+    }
+    
+    public List<ItemEntry> getEntriesInChunk(World world, int chunkX, int chunkZ) {
+        Map<Long, List<ItemEntry>> chunks = this.entriesByChunk.get(world.getUID());
+        if (chunks == null) {
+            return Collections.emptyList();
+        }
+        
+        List<ItemEntry> entries = chunks.get(getChunkKey(chunkX, chunkZ));
+        return entries != null ? Collections.unmodifiableList(entries) : Collections.emptyList();
+    }
+    
+    public void handleChunkLoad(Chunk chunk) {
+        restoreSpawnedItems(chunk);
+        for (ItemEntry entry : getEntriesInChunk(chunk.getWorld(), chunk.getX(), chunk.getZ())) {
+            entry.handleChunkLoad();
+        }
+    }
+    
+    /**
+     * Adds items in the chunk that are tagged with a generator back to that generator. Items stay tagged across restarts so this keeps the max items correct <br>
+     * Only worlds with initialized generators are checked. On 1.17 and newer the entities of a chunk load after the chunk, see {@link #restoreSpawnedItems(World, List)}
+     *
+     * @param chunk The chunk
+     */
+    public void restoreSpawnedItems(Chunk chunk) {
+        restoreSpawnedItems(chunk.getWorld(), Arrays.asList(chunk.getEntities()));
+    }
+    
+    /**
+     * Adds tagged items back to their generator, items that are still tracked get their entity replaced as the old entity is no longer valid once its chunk unloaded
+     *
+     * @param world    The world of the entities
+     * @param entities The entities that loaded
+     */
+    public void restoreSpawnedItems(World world, List<? extends Entity> entities) {
+        if (!SpawnedItemTags.isAvailable() || !this.entriesByChunk.containsKey(world.getUID())) {
+            return;
+        }
+        
+        for (Entity entity : entities) {
+            if (!(entity instanceof Item item)) {
+                continue;
+            }
+            
+            SpawnedItem tracked = this.spawnedItemIndex.get(item.getUniqueId());
+            if (tracked != null) {
+                if (tracked.item() != item) {
+                    tracked.generator().replaceSpawnedItem(tracked, item);
+                }
+                
+                continue;
+            }
+            
+            SpawnedItemTags.Owner owner = SpawnedItemTags.read(item);
+            if (owner == null) {
+                continue;
+            }
+            
+            //The generator may not be loaded yet, its init restores the items in loaded chunks
+            ItemGenerator generator = getGenerator(owner.generatorId());
+            if (generator == null || !world.equals(generator.getWorld())) {
+                continue;
+            }
+            
+            ItemEntry entry = generator.getItemEntry(owner.entryId());
+            if (entry == null) {
+                SpawnedItemTags.clear(item);
+                continue;
+            }
+            
+            generator.addSpawnedItem(entry, item);
+        }
+    }
+    
+    public void handleChunkUnload(Chunk chunk) {
+        for (ItemEntry entry : getEntriesInChunk(chunk.getWorld(), chunk.getX(), chunk.getZ())) {
+            entry.handleChunkUnload();
+        }
+    }
+    
+    void indexEntryChunk(ItemEntry entry) {
+        long key = getChunkKey(entry.getSpawnPosition().getBlockX() >> 4, entry.getSpawnPosition().getBlockZ() >> 4);
+        this.entriesByChunk.computeIfAbsent(entry.getWorld().getUID(), uid -> new ConcurrentHashMap<>()).compute(key, (k, entries) -> {
+            if (entries == null) {
+                entries = new CopyOnWriteArrayList<>();
+            }
+            
+            if (!entries.contains(entry)) {
+                entries.add(entry);
+            }
+            
+            return entries;
+        });
+    }
+    
+    void unindexEntryChunk(ItemEntry entry) {
+        Map<Long, List<ItemEntry>> chunks = this.entriesByChunk.get(entry.getWorld().getUID());
+        if (chunks == null) {
+            return;
+        }
+        
+        long key = getChunkKey(entry.getSpawnPosition().getBlockX() >> 4, entry.getSpawnPosition().getBlockZ() >> 4);
+        chunks.computeIfPresent(key, (k, entries) -> {
+            entries.remove(entry);
+            return entries.isEmpty() ? null : entries;
+        });
+    }
+    
+    /**
+     * @param location The location
+     * @return The generators whose region contains the location, usually this is at most one
+     */
+    public List<ItemGenerator> getGeneratorsAt(Location location) {
+        if (location == null || location.getWorld() == null) {
+            return Collections.emptyList();
+        }
+        
+        List<ItemGenerator> generators = getGeneratorsInChunk(location.getWorld(), location.getBlockX() >> 4, location.getBlockZ() >> 4);
+        List<ItemGenerator> found = null;
+        for (ItemGenerator generator : generators) {
+            if (generator.contains(location)) {
+                if (found == null) {
+                    found = new ArrayList<>(1);
+                }
+                
+                found.add(generator);
+            }
+        }
+        
+        return found != null ? found : Collections.emptyList();
+    }
+    
+    /**
+     * @param location The location
+     * @return The first generator whose region contains the location, or null if there is none
+     */
+    public ItemGenerator getGeneratorAt(Location location) {
+        if (location == null || location.getWorld() == null) {
+            return null;
+        }
+        
+        for (ItemGenerator generator : getGeneratorsInChunk(location.getWorld(), location.getBlockX() >> 4, location.getBlockZ() >> 4)) {
+            if (generator.contains(location)) {
+                return generator;
+            }
+        }
+        
+        return null;
+    }
+    
+    public ItemGenerator getGeneratorAt(Entity entity) {
+        return entity != null ? getGeneratorAt(entity.getLocation()) : null;
+    }
+    
+    /**
+     * @param world  The world
+     * @param chunkX The chunk x
+     * @param chunkZ The chunk z
+     * @return A read-only view of the generators whose region overlaps the chunk
+     */
+    public List<ItemGenerator> getGeneratorsInChunk(World world, int chunkX, int chunkZ) {
+        Map<Long, List<ItemGenerator>> chunks = this.regionsByChunk.get(world.getUID());
+        if (chunks == null) {
+            return Collections.emptyList();
+        }
+        
+        List<ItemGenerator> generators = chunks.get(getChunkKey(chunkX, chunkZ));
+        return generators != null ? Collections.unmodifiableList(generators) : Collections.emptyList();
+    }
+    
+    /**
+     * @param location The location
+     * @param radius   The radius in blocks
+     * @return The generators whose region is within the radius of the location, a location inside a region has a distance of 0
+     */
+    public List<ItemGenerator> getGeneratorsNear(Location location, double radius) {
+        if (location == null || location.getWorld() == null || radius < 0) {
+            return Collections.emptyList();
+        }
+        
+        Map<Long, List<ItemGenerator>> chunks = this.regionsByChunk.get(location.getWorld().getUID());
+        if (chunks == null) {
+            return Collections.emptyList();
+        }
+        
+        double x = location.getX(), y = location.getY(), z = location.getZ();
+        int minChunkX = (int) Math.floor(x - radius) >> 4, maxChunkX = (int) Math.floor(x + radius) >> 4;
+        int minChunkZ = (int) Math.floor(z - radius) >> 4, maxChunkZ = (int) Math.floor(z + radius) >> 4;
+        double radiusSquared = radius * radius;
+        
+        //Generators are in every chunk they overlap, so the found set removes duplicates
+        Set<ItemGenerator> found = new LinkedHashSet<>();
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                List<ItemGenerator> generators = chunks.get(getChunkKey(chunkX, chunkZ));
+                if (generators == null) {
+                    continue;
+                }
+                
+                for (ItemGenerator generator : generators) {
+                    //The region can be removed by another thread while this is iterating
+                    IndexedRegion region = indexedRegions.get(generator);
+                    if (region != null && !found.contains(generator) && region.distanceSquared(x, y, z) <= radiusSquared) {
+                        found.add(generator);
+                    }
+                }
+            }
+        }
+        
+        return new ArrayList<>(found);
+    }
+    
+    void indexGeneratorRegion(ItemGenerator generator) {
+        unindexGeneratorRegion(generator);
+        Position min = generator.getBoundsMin(), max = generator.getBoundsMax();
+        IndexedRegion region = new IndexedRegion(generator.getWorld().getUID(), Math.min(min.getBlockX(), max.getBlockX()), Math.min(min.getBlockY(), max.getBlockY()), Math.min(min.getBlockZ(), max.getBlockZ()), Math.max(min.getBlockX(), max.getBlockX()), Math.max(min.getBlockY(), max.getBlockY()), Math.max(min.getBlockZ(), max.getBlockZ()));
+        this.indexedRegions.put(generator, region);
+        
+        Map<Long, List<ItemGenerator>> chunks = this.regionsByChunk.computeIfAbsent(region.worldUID(), uid -> new ConcurrentHashMap<>());
+        for (int chunkX = region.minX() >> 4; chunkX <= region.maxX() >> 4; chunkX++) {
+            for (int chunkZ = region.minZ() >> 4; chunkZ <= region.maxZ() >> 4; chunkZ++) {
+                chunks.compute(getChunkKey(chunkX, chunkZ), (k, generators) -> {
+                    if (generators == null) {
+                        generators = new CopyOnWriteArrayList<>();
+                    }
+                    
+                    generators.add(generator);
+                    return generators;
+                });
+            }
+        }
+    }
+    
+    void unindexGeneratorRegion(ItemGenerator generator) {
+        IndexedRegion region = this.indexedRegions.remove(generator);
+        if (region == null) {
+            return;
+        }
+        
+        Map<Long, List<ItemGenerator>> chunks = this.regionsByChunk.get(region.worldUID());
+        if (chunks == null) {
+            return;
+        }
+        
+        for (int chunkX = region.minX() >> 4; chunkX <= region.maxX() >> 4; chunkX++) {
+            for (int chunkZ = region.minZ() >> 4; chunkZ <= region.maxZ() >> 4; chunkZ++) {
+                chunks.computeIfPresent(getChunkKey(chunkX, chunkZ), (k, generators) -> {
+                    generators.remove(generator);
+                    return generators.isEmpty() ? null : generators;
+                });
+            }
+        }
+    }
+    
+    void indexSpawnedItem(SpawnedItem spawnedItem) {
+        this.spawnedItemIndex.put(spawnedItem.item().getUniqueId(), spawnedItem);
+    }
+    
+    void unindexSpawnedItem(UUID uniqueId) {
+        this.spawnedItemIndex.remove(uniqueId);
+    }
+    
+    private record RegionSpawnScheduler(SpawnScheduler scheduler, ExecutionBackend.Task task) {
+    }
+    
+    /**
+     * The block bounds a generator was indexed with, the max values are inclusive
+     */
+    private record IndexedRegion(UUID worldUID, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        double distanceSquared(double x, double y, double z) {
+            double dx = Math.max(0, Math.max(minX - x, x - (maxX + 1)));
+            double dy = Math.max(0, Math.max(minY - y, y - (maxY + 1)));
+            double dz = Math.max(0, Math.max(minZ - z, z - (maxZ + 1)));
+            return dx * dx + dy * dy + dz * dz;
+        }
+    }
 }
\ No newline at end of file
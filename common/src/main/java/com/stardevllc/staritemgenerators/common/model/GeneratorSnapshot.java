@@ -0,0 +1,30 @@
+package com.stardevllc.staritemgenerators.common.model;
+
+import com.stardevllc.starmclib.Position;
+
+import java.util.List;
+
+/**
+ * An immutable copy of the state of an {@link ItemGenerator} that can be used from any thread, see {@link ItemGenerator#snapshot()}
+ *
+ * @param id           The id of the generator
+ * @param worldName    The name of the world the generator is initialized in, or null if it is not initialized
+ * @param initialized  If the generator is initialized
+ * @param running      If the generator is running
+ * @param virtual      If the generator stores items as counters while no player is near
+ * @param boundsMin    The min bounds
+ * @param boundsMax    The max bounds
+ * @param spawnedItems The amount of spawned items including virtual items
+ * @param entries      The snapshots of the entries
+ */
+public record GeneratorSnapshot(String id, String worldName, boolean initialized, boolean running, boolean virtual, Position boundsMin, Position boundsMax, int spawnedItems, List<EntrySnapshot> entries) {
+    public EntrySnapshot getEntry(String entryId) {
+        for (EntrySnapshot entry : entries) {
+            if (entry.id().equalsIgnoreCase(entryId)) {
+                return entry;
+            }
+        }
+        
+        return null;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,222 @@
+package com.stardevllc.staritemgenerators.common.model;
+
+import com.stardevllc.starmclib.Position;
+import org.bukkit.World;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * A generator configuration that many generators can be created from, like one generator for every arena of a minigame <br>
+ * Instances get copies of the entries of the template. The copies share the item templates, builders, loot tables, spawn points and listeners with the template, so an instance only holds its own spawn state <br>
+ * Loot table entries of each instance draw from their own seed unless {@link #setSharedLootSequence(boolean)} is set <br>
+ * Instances are not saved by the storage, see {@link ItemGenerator#setSaved(boolean)}
+ */
+public class GeneratorTemplate {
+    
+    protected final String id;
+    
+    /**
+     * The entries instances are copied from, these are never initialized
+     */
+    protected final List<ItemEntry> entries;
+    
+    /**
+     * The bounds are shared by all instances, as they are world independent
+     */
+    protected final Position boundsMin, boundsMax;
+    
+    protected boolean virtual;
+    protected double materializeRadius;
+    protected boolean catchUpUnloaded;
+    
+    /**
+     * If the loot table entries of all instances draw from the seed of the template, so every instance draws the same items in the same order <br>
+     * By default every instance draws from a seed that is mixed with its id
+     */
+    protected boolean sharedLootSequence;
+    
+    /**
+     * This must be called on the main thread as the item templates of the entries are built
+     *
+     * @param id        The id of the template, instances are named with this id
+     * @param entries   The entries, these are copied so later changes to them do not change the template
+     * @param boundsMin The min position of the bounds
+     * @param boundsMax The max position of the bounds
+     */
+    public GeneratorTemplate(String id, List<ItemEntry> entries, Position boundsMin, Position boundsMax) {
+        this.id = id;
+        List<ItemEntry> copies = new ArrayList<>(entries.size());
+        for (ItemEntry entry : entries) {
+            copies.add(entry.copy());
+        }
+        this.entries = List.copyOf(copies);
+        this.boundsMin = boundsMin;
+        this.boundsMax = boundsMax;
+    }
+    
+    /**
+     * Creates a template with the entries and settings of a generator, this must be called on the main thread
+     *
+     * @param id        The id of the template
+     * @param generator The generator
+     * @return The template
+     */
+    public static GeneratorTemplate of(String id, ItemGenerator generator) {
+        GeneratorTemplate template = new GeneratorTemplate(id, generator.getItemEntries(), generator.getBoundsMin(), generator.getBoundsMax());
+        template.setVirtual(generator.isVirtual());
+        template.setMaterializeRadius(generator.getMaterializeRadius());
+        template.setCatchUpUnloaded(generator.isCatchUpUnloaded());
+        return template;
+    }
+    
+    /**
+     * Creates a generator from this template. It is not registered or initialized
+     *
+     * @param generatorId The id of the generator
+     * @return The new generator
+     */
+    public ItemGenerator createInstance(String generatorId) {
+        List<ItemEntry> instanceEntries = new ArrayList<>(this.entries.size());
+        for (ItemEntry entry : this.entries) {
+            if (!sharedLootSequence && entry instanceof LootTableEntry lootEntry) {
+                instanceEntries.add(lootEntry.copy(getInstanceSeed(lootEntry.getSeed(), generatorId)));
+            } else {
+                instanceEntries.add(entry.copy());
+            }
+        }
+        
+        ItemGenerator generator = new ItemGenerator(generatorId, instanceEntries, boundsMin, boundsMax);
+        generator.setSaved(false);
+        generator.setVirtual(virtual);
+        generator.setMaterializeRadius(materializeRadius);
+        generator.setCatchUpUnloaded(catchUpUnloaded);
+        return generator;
+    }
+    
+    /**
+     * The seed only depends on the seed of the template entry and the id, so an instance draws the same sequence when it is created again
+     *
+     * @param seed        The seed of the template entry
+     * @param generatorId The id of the instance
+     * @return The seed for the loot table entry of the instance
+     */
+    protected long getInstanceSeed(long seed, String generatorId) {
+        return new SplittableRandom(seed ^ generatorId.hashCode() * 0x9E3779B97F4A7C15L).nextLong();
+    }
+    
+    /**
+     * Creates, registers and initializes an instance in every world. This must be called on the main thread <br>
+     * The instances are named with {@link #getInstanceId(World)}, worlds that already have an instance of this template are skipped
+     *
+     * @param registry The registry to register the instances to
+     * @param worlds   The worlds
+     * @param start    If the instances are started
+     * @return The new instances
+     */
+    public List<ItemGenerator> instantiate(GeneratorRegistry registry, Collection<World> worlds, boolean start) {
+        List<ItemGenerator> instances = new ArrayList<>(worlds.size());
+        for (World world : worlds) {
+            String instanceId = getInstanceId(world);
+            if (registry.containsKey(instanceId)) {
+                continue;
+            }
+            
+            ItemGenerator generator = createInstance(instanceId);
+            registry.register(generator);
+            generator.init(world);
+            if (start) {
+                generator.start();
+            }
+            
+            instances.add(generator);
+        }
+        
+        return instances;
+    }
+    
+    /**
+     * Stops and removes the instances of this template in the worlds, their spawned items are removed from the world. This must be called on the main thread
+     *
+     * @param registry The registry the instances were registered to
+     * @param worlds   The worlds
+     * @return The removed instances
+     */
+    public List<ItemGenerator> removeInstances(GeneratorRegistry registry, Collection<World> worlds) {
+        List<ItemGenerator> instances = new ArrayList<>(worlds.size());
+        for (World world : worlds) {
+            ItemGenerator generator = registry.get(getInstanceId(world));
+            if (generator == null) {
+                continue;
+            }
+            
+            generator.stop();
+            generator.clearSpawnedItems();
+            registry.removeGenerator(generator);
+            instances.add(generator);
+        }
+        
+        return instances;
+    }
+    
+    /**
+     * @param world The world
+     * @return The id of the instance of this template in the world
+     */
+    public String getInstanceId(World world) {
+        return id + "-" + world.getName();
+    }
+    
+    public String getId() {
+        return id;
+    }
+    
+    /**
+     * @return The entries instances are copied from, these must not be changed
+     */
+    public List<ItemEntry> getEntries() {
+        return entries;
+    }
+    
+    public Position getBoundsMin() {
+        return boundsMin;
+    }
+    
+    public Position getBoundsMax() {
+        return boundsMax;
+    }
+    
+    public boolean isVirtual() {
+        return virtual;
+    }
+    
+    public void setVirtual(boolean virtual) {
+        this.virtual = virtual;
+    }
+    
+    public double getMaterializeRadius() {
+        return materializeRadius;
+    }
+    
+    public void setMaterializeRadius(double materializeRadius) {
+        this.materializeRadius = materializeRadius;
+    }
+    
+    public boolean isCatchUpUnloaded() {
+        return catchUpUnloaded;
+    }
+    
+    public void setCatchUpUnloaded(boolean catchUpUnloaded) {
+        this.catchUpUnloaded = catchUpUnloaded;
+    }
+    
+    public boolean isSharedLootSequence() {
+        return sharedLootSequence;
+    }
+    
+    public void setSharedLootSequence(boolean sharedLootSequence) {
+        this.sharedLootSequence = sharedLootSequence;
+    }
+}
\ No newline at end of file
@@ -1,9 +1,15 @@
 package com.stardevllc.staritemgenerators.common.model;
 
 import com.stardevllc.itembuilder.common.ItemBuilder;
+import com.stardevllc.staritemgenerators.common.metrics.EntryMetrics;
+import com.stardevllc.staritemgenerators.common.metrics.MetricsSnapshot;
+import com.stardevllc.staritemgenerators.common.model.listener.AsyncListenerDispatcher;
+import com.stardevllc.staritemgenerators.common.model.listener.DispatchMode;
 import com.stardevllc.staritemgenerators.common.model.listener.ItemPickupListener;
+import com.stardevllc.staritemgenerators.common.model.listener.ItemPrepareListener;
 import com.stardevllc.staritemgenerators.common.model.listener.ItemSpawnListener;
-import com.stardevllc.starlib.clock.clocks.Timer;
+import com.stardevllc.staritemgenerators.common.scheduler.SpawnPreparer;
+import com.stardevllc.staritemgenerators.common.scheduler.SpawnScheduler;
 import com.stardevllc.starmclib.Position;
 import org.bukkit.Location;
 import org.bukkit.World;
@@ -13,6 +19,10 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.util.Vector;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 
 public class ItemEntry {
     
@@ -30,9 +40,53 @@ public class ItemEntry {
         /**
          * Controls if the item can be picked up by inventories
          */
-        INVENTORY_PICKUP
+        INVENTORY_PICKUP,
+        
+        /**
+         * Controls if the item is built from the builder on every spawn instead of using a cached template. Use this for builders that change their output
+         */
+        DYNAMIC_ITEM,
+        
+        /**
+         * Controls if new spawns add to the amount of an existing spawned item at the spawn position instead of spawning a new entity <br>
+         * With this flag the max items is the total amount of the items instead of the amount of entities
+         */
+        STACK_MERGE,
+        
+        /**
+         * Controls if only items inside the generator bounds count towards the max items, items that were pushed out of the bounds are still tracked but do not count <br>
+         * The positions of the items are checked at most once per {@link ItemGenerator#REGION_CHECK_INTERVAL} when the cap is checked
+         */
+        REGION_CAP,
+        
+        /**
+         * Controls if items spawn at points spread over the generator bounds instead of the spawn points <br>
+         * The points are the block columns of the bounds at the height of the spawn position, large bounds use every few columns so there are at most {@link #MAX_AREA_POINTS} points
+         */
+        AREA_SPAWN
     }
     
+    public enum SpawnStrategy {
+        /**
+         * Uses the spawn points in order
+         */
+        ROUND_ROBIN,
+        
+        /**
+         * Uses a random spawn point
+         */
+        RANDOM,
+        
+        /**
+         * Uses the spawn point with the least items of this entry. Items restored after a restart do not count towards any point
+         */
+        LEAST_POPULATED
+    }
+    
+    public static final int MAX_AREA_POINTS = 256;
+    
+    private static final Vector NO_VELOCITY = new Vector();
+    
     /**
      * A unique identifier for the item entry. This is per generator
      */
@@ -43,15 +97,30 @@ public class ItemEntry {
      */
     protected ItemBuilder<?, ?> builder;
     
+    /**
+     * The item built from the builder, spawned items are clones of this. This is null until first needed
+     */
+    protected volatile ItemStack itemTemplate;
+    
+    /**
+     * Items prepared ahead by a {@link SpawnPreparer}, these are used before new items are created
+     */
+    private final Queue<PreparedItem> preparedItems = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * Changed when the template is invalidated, so items prepared from an old template while it was changed are not spawned
+     */
+    private volatile int templateVersion;
+    
     /**
      * The cooldown in milliseconds before the next item spawns
      */
-    protected long cooldown;
+    protected volatile long cooldown;
     
     /**
-     * The max amount of items that can be within the generator bounds
+     * The max amount of items the generator tracks for this entry. With {@link Flag#REGION_CAP} only the items within the generator bounds are counted
      */
-    protected int maxItems;
+    protected volatile int maxItems;
     
     /**
      * The base spawn position for the items
@@ -59,9 +128,35 @@ public class ItemEntry {
     protected Position spawnPosition;
     
     /**
-     * The timer instance for controlling when items spawn
+     * The points items spawn at, items spawn at the spawn position if this is empty <br>
+     * The spawn position is still used for the chunk and the region of the entry, so the points should be close to it
+     */
+    protected volatile List<Position> spawnPoints = List.of();
+    
+    /**
+     * How the spawn point of the next item is chosen
      */
-    protected Timer timer;
+    protected volatile SpawnStrategy spawnStrategy = SpawnStrategy.ROUND_ROBIN;
+    
+    /**
+     * The locations of the spawn points, built when the entry is initialized so spawning an item does not create a location
+     */
+    private volatile Location[] spawnLocations;
+    
+    /**
+     * The next spawn point for {@link SpawnStrategy#ROUND_ROBIN}, only used from the thread that spawns the items
+     */
+    private int spawnPointCursor;
+    
+    /**
+     * The handle within the {@link SpawnScheduler} for controlling when items spawn
+     */
+    protected SpawnScheduler.Handle spawnHandle;
+    
+    /**
+     * The scheduler that owns the spawn handle, this is kept as the generator can get a different scheduler when it is initialized again
+     */
+    protected SpawnScheduler spawnScheduler;
     
     /**
      * This is the generator instance
@@ -73,13 +168,54 @@ public class ItemEntry {
      */
     protected World world;
     
+    /**
+     * If the chunk at the spawn position is loaded, the entry is paused while it is not
+     */
+    protected boolean chunkLoaded = true;
+    
+    /**
+     * Changed with every init and reset, so scheduling that was handed to the region thread is skipped when it is out of date
+     */
+    private volatile int initVersion;
+    
+    /**
+     * The scheduler time that the chunk at the spawn position was unloaded at, or -1 if it is loaded
+     */
+    protected long chunkUnloadedAt = -1;
+    
+    /**
+     * Spawns that were missed while the chunk was unloaded, these are spawned with the next scheduled spawn
+     */
+    protected volatile int pendingCatchUp;
+    
     /**
      * The boolean based flags for the entry
      */
     protected final Set<Flag> flags = EnumSet.noneOf(Flag.class);
     
-    private final List<ItemPickupListener> itemPickupListeners = new ArrayList<>();
-    private final List<ItemSpawnListener> itemSpawnListeners = new ArrayList<>();
+    /**
+     * The spawn, pickup and scheduling counters of this entry
+     */
+    protected final EntryMetrics metrics = new EntryMetrics();
+    
+    /**
+     * Listeners are rarely added and called on every spawn and pickup, so these are arrays that are copied when a listener is added <br>
+     * Calling them is an index loop over the array without allocating an iterator
+     */
+    private volatile ItemPickupListener[] itemPickupListeners = new ItemPickupListener[0];
+    private volatile ItemSpawnListener[] itemSpawnListeners = new ItemSpawnListener[0];
+    private volatile ItemPrepareListener[] itemPrepareListeners = new ItemPrepareListener[0];
+    
+    /**
+     * Listeners that are called by the {@link AsyncListenerDispatcher} of the registry instead of on the thread of the event
+     */
+    private final List<ItemPickupListener> asyncItemPickupListeners = new CopyOnWriteArrayList<>();
+    private final List<ItemSpawnListener> asyncItemSpawnListeners = new CopyOnWriteArrayList<>();
+    
+    /**
+     * The listeners of the {@link GeneratorEventBus} that match this entry, built by the bus when it is missing or out of date
+     */
+    volatile GeneratorEventBus.DispatchTable dispatchTable;
     
     public ItemEntry(String id, ItemBuilder<?, ?> builder, long cooldown, int maxItems, Position spawnPosition, Flag... flags) {
         this.id = id;
@@ -103,93 +239,682 @@ public class ItemEntry {
         }
     }
     
+    /**
+     * Creates an entry with the same configuration as another entry, see {@link #copy()}
+     */
+    protected ItemEntry(ItemEntry other) {
+        this.id = other.id;
+        this.builder = other.builder;
+        if (other.builder != null && other.itemTemplate == null && !other.hasFlag(Flag.DYNAMIC_ITEM)) {
+            other.getItemTemplate();
+        }
+        this.itemTemplate = other.itemTemplate;
+        this.cooldown = other.cooldown;
+        this.maxItems = other.maxItems;
+        this.spawnPosition = other.spawnPosition;
+        this.spawnPoints = other.spawnPoints;
+        this.spawnStrategy = other.spawnStrategy;
+        this.flags.addAll(other.flags);
+        
+        //The arrays are never changed, adding a listener to either entry replaces its own array
+        this.itemPickupListeners = other.itemPickupListeners;
+        this.itemSpawnListeners = other.itemSpawnListeners;
+        this.itemPrepareListeners = other.itemPrepareListeners;
+        this.asyncItemPickupListeners.addAll(other.asyncItemPickupListeners);
+        this.asyncItemSpawnListeners.addAll(other.asyncItemSpawnListeners);
+    }
+    
+    /**
+     * Creates an entry without an item or builder, subclasses that use this must override {@link #createItemStack()} and {@link #getItemTemplate()}
+     */
+    protected ItemEntry(String id, long cooldown, int maxItems, Position spawnPosition, Collection<Flag> flags) {
+        this.id = id;
+        this.cooldown = cooldown;
+        this.maxItems = maxItems;
+        this.spawnPosition = spawnPosition;
+        if (flags != null) {
+            this.flags.addAll(flags);
+        }
+    }
+    
+    /**
+     * Creates an entry that spawns copies of an item instead of using a builder, this is used for entries loaded from storage
+     */
+    public ItemEntry(String id, ItemStack item, long cooldown, int maxItems, Position spawnPosition, Collection<Flag> flags) {
+        this.id = id;
+        this.itemTemplate = item.clone();
+        this.cooldown = cooldown;
+        this.maxItems = maxItems;
+        this.spawnPosition = spawnPosition;
+        if (flags != null) {
+            this.flags.addAll(flags);
+        }
+    }
+    
     public void init(ItemGenerator generator, World world) {
         this.generator = generator;
+        this.dispatchTable = null;
         this.world = world;
+        this.spawnLocations = buildSpawnLocations(world);
+        
+        if (this.spawnHandle != null) {
+            this.spawnScheduler.cancel(this.spawnHandle);
+        }
+        
+        this.spawnHandle = null;
+        this.spawnScheduler = generator.getSpawnScheduler();
+        
+        this.chunkUnloadedAt = -1;
+        this.pendingCatchUp = 0;
+        if (generator.getRegistry() != null) {
+            generator.getRegistry().indexEntryChunk(this);
+        }
+        
+        //On region threaded servers only the thread that owns the chunk can check if it is loaded, so the entry is scheduled there
+        int version = ++this.initVersion;
+        runAtSpawnPosition(() -> schedule(version));
+    }
+    
+    /**
+     * Schedules this entry after it was initialized, this must be called on the thread that owns the spawn position
+     *
+     * @param version The init version this was requested for, nothing is done if the entry was reset or initialized again since
+     */
+    private void schedule(int version) {
+        if (version != this.initVersion || this.generator == null) {
+            return;
+        }
+        
+        this.chunkLoaded = world.isChunkLoaded(spawnPosition.getBlockX() >> 4, spawnPosition.getBlockZ() >> 4);
+        this.spawnHandle = this.spawnScheduler.schedule(this, cooldown, !generator.runningProperty.get() || !chunkLoaded);
+    }
+    
+    /**
+     * Called by the {@link SpawnScheduler} when this entry is due to spawn an item <br>
+     * Spawns missed while the chunk was unloaded are spawned with it up to the max spawns, the rest stay pending for the next time the entry is due
+     *
+     * @param maxSpawns The spawns left in the budget of the tick, one spawn is always allowed
+     * @return The amount of items spawned in the world, this is what counts towards the spawn budget
+     */
+    public int handleScheduledSpawn(int maxSpawns) {
+        if (this.world == null || this.generator == null || !generator.runningProperty.get()) {
+            return 0;
+        }
         
-        if (this.timer != null) {
-            this.timer.cancel();
+        //On region threaded servers the scheduler of the generator can be on a different region than this entry
+        if (!isSpawnPositionOwned()) {
+            runAtSpawnPosition(() -> handleScheduledSpawn(maxSpawns));
+            return 0;
         }
         
-        this.timer = generator.getClockManager().createTimer(cooldown);
-        this.timer.addRepeatingCallback(snapshot -> {
-            if (this.world != null && this.generator != null) {
-                if (generator.runningProperty.get()) {
-                    int currentCount = generator.getSpawnedItemsCount(getId());
-                    if (currentCount < this.maxItems) {
-                        generator.addSpawnedItem(getId(), spawnItem(world));
-                    }
+        boolean virtual = false;
+        if (generator.isVirtual()) {
+            if (generator.isPlayerNearby()) {
+                generator.materializeVirtualItems();
+            } else {
+                virtual = true;
+            }
+        }
+        
+        int pending = this.pendingCatchUp;
+        int spawns = (int) Math.min(1L + pending, Math.max(1, maxSpawns));
+        this.pendingCatchUp = (int) (pending + 1L - spawns);
+        
+        int spawned = 0;
+        for (int i = 0; i < spawns; i++) {
+            if (isAtMaxItems()) {
+                if (i == 0) {
+                    metrics.recordCapHit();
                 }
+                
+                //Missed spawns past the cap are dropped
+                this.pendingCatchUp = 0;
+                break;
+            }
+            
+            if (virtual) {
+                generator.addVirtualItem(this);
+                metrics.recordSpawn();
+            } else if (produceItem()) {
+                metrics.recordSpawn();
+                spawned++;
+            }
+        }
+        
+        return spawned;
+    }
+    
+    /**
+     * Called by the {@link SpawnScheduler} to spawn the items that were stored as counters while the generator was virtual <br>
+     * Nothing is spawned while the chunk is unloaded, the items stay stored until it loads
+     *
+     * @param maxSpawns The spawns left in the budget of the tick, one spawn is always allowed
+     * @return The amount of items spawned in the world, this is what counts towards the spawn budget
+     */
+    public int materializeVirtualItems(int maxSpawns) {
+        if (this.world == null || this.generator == null || !this.chunkLoaded) {
+            return 0;
+        }
+        
+        if (!isSpawnPositionOwned()) {
+            runAtSpawnPosition(() -> materializeVirtualItems(maxSpawns));
+            return 0;
+        }
+        
+        int amount = generator.takeVirtualItems(this, Math.max(1, maxSpawns));
+        int spawned = 0;
+        for (int i = 0; i < amount; i++) {
+            if (produceItem()) {
+                spawned++;
+            }
+        }
+        
+        return spawned;
+    }
+    
+    /**
+     * Queues the items of this entry that are stored as counters to be spawned by the {@link SpawnScheduler}
+     */
+    public void queueMaterialize() {
+        if (this.spawnHandle != null) {
+            this.spawnScheduler.materialize(this.spawnHandle);
+        }
+    }
+    
+    /**
+     * @return If the current thread can spawn items at the spawn position, this is always true unless the server is region threaded
+     */
+    public boolean isSpawnPositionOwned() {
+        GeneratorRegistry registry = generator.getRegistry();
+        return registry == null || registry.isOwnedByCurrentThread(world, spawnPosition.getBlockX() >> 4, spawnPosition.getBlockZ() >> 4);
+    }
+    
+    /**
+     * Runs a task on the thread that owns the spawn position, the task is run right away unless the server is region threaded
+     *
+     * @param task The task
+     */
+    public void runAtSpawnPosition(Runnable task) {
+        GeneratorRegistry registry = generator.getRegistry();
+        if (registry == null) {
+            task.run();
+        } else {
+            registry.runAt(world, spawnPosition.getBlockX() >> 4, spawnPosition.getBlockZ() >> 4, task);
+        }
+    }
+    
+    /**
+     * @return If the generator has the max amount of items for this entry, this uses the total amount for entries with {@link Flag#STACK_MERGE}
+     */
+    public boolean isAtMaxItems() {
+        if (hasFlag(Flag.REGION_CAP)) {
+            generator.refreshRegionItems(this, false);
+            if (hasFlag(Flag.STACK_MERGE)) {
+                return generator.getSpawnedItemsAmountInRegion(this) >= this.maxItems;
+            }
+            
+            return generator.getSpawnedItemsCountInRegion(this) >= this.maxItems;
+        }
+        
+        if (hasFlag(Flag.STACK_MERGE)) {
+            return generator.getSpawnedItemsAmount(this) >= this.maxItems;
+        }
+        
+        return generator.getSpawnedItemsCount(this) >= this.maxItems;
+    }
+    
+    /**
+     * Puts a new item into the world, either by merging it into an existing item or spawning a new one. This does not check the max items <br>
+     * The item is created first so merged items are the same as spawned ones, including the items of {@link Flag#DYNAMIC_ITEM} builders
+     *
+     * @return If an item was spawned or merged, false if a prepare listener skipped it
+     */
+    protected boolean produceItem() {
+        ItemStack itemStack = takeItemStack();
+        if (itemStack == null) {
+            return false;
+        }
+        
+        if (hasFlag(Flag.STACK_MERGE) && mergeItem(itemStack)) {
+            return true;
+        }
+        
+        int spawnPoint = nextSpawnPoint();
+        generator.addSpawnedItem(this, spawnItem(world, itemStack, spawnPoint), spawnPoint);
+        return true;
+    }
+    
+    /**
+     * Takes the next prepared item, or creates an item and calls the prepare listeners if none was prepared
+     *
+     * @return The item stack to spawn, or null if a prepare listener skipped the spawn
+     */
+    protected ItemStack takeItemStack() {
+        PreparedItem prepared;
+        while ((prepared = this.preparedItems.poll()) != null) {
+            if (prepared.templateVersion() == this.templateVersion) {
+                return prepared.itemStack();
+            }
+        }
+        
+        ItemStack itemStack = createItemStack();
+        return handleItemPrepare(itemStack) ? itemStack : null;
+    }
+    
+    /**
+     * Creates the items for the next spawn ahead of time and calls the prepare listeners for them, this is called from the worker thread of a {@link SpawnPreparer} <br>
+     * Only copies of an already built template are prepared. Entries with {@link Flag#DYNAMIC_ITEM} build their items on the main thread as builders may use the world <br>
+     * Entries with {@link Flag#STACK_MERGE} are prepared as well, merged items are taken the same way as spawned ones so the prepare listeners can skip or change them
+     *
+     * @return The amount of items that were prepared
+     */
+    public int prepareItems() {
+        //The version is read before the template, invalidating clears the template before changing the version so an old template is never stamped with a new version
+        int version = this.templateVersion;
+        ItemStack template = this.itemTemplate;
+        if (template == null || this.generator == null || hasFlag(Flag.DYNAMIC_ITEM)) {
+            return 0;
+        }
+        
+        int needed = 1 + this.pendingCatchUp - this.preparedItems.size();
+        int prepared = 0;
+        for (int i = 0; i < needed; i++) {
+            ItemStack itemStack = template.clone();
+            boolean spawn = handleItemPrepare(itemStack);
+            if (version != this.templateVersion) {
+                break;
             }
             
-            this.timer.setLengthAndReset(cooldown);
-        }, cooldown);
+            this.preparedItems.add(new PreparedItem(spawn ? itemStack : null, version));
+            prepared++;
+        }
+        
+        return prepared;
+    }
+    
+    /**
+     * @return The amount of items that are prepared for the next spawns
+     */
+    public int getPreparedItemsCount() {
+        return this.preparedItems.size();
+    }
+    
+    /**
+     * Adds the amount of the item stack to the last spawned item of this entry if it is still at the spawn position, the same item and not a full stack
+     *
+     * @param itemStack The item stack to merge
+     * @return If the item was merged, if false a new item needs to be spawned
+     */
+    protected boolean mergeItem(ItemStack itemStack) {
+        SpawnedItemBucket bucket = generator.getSpawnedItemBucket(this);
+        if (bucket == null) {
+            return false;
+        }
+        
+        SpawnedItem target = bucket.getMergeTarget();
+        if (target == null) {
+            return false;
+        }
+        
+        Item item = target.item();
+        if (!item.isValid() || !item.getWorld().equals(world) || item.getLocation().distanceSquared(getSpawnLocation(world, target.spawnPoint())) > 1.0) {
+            bucket.setMergeTarget(null);
+            return false;
+        }
+        
+        ItemStack stack = item.getItemStack();
+        int amount = itemStack.getAmount();
+        if (stack.getAmount() + amount > stack.getMaxStackSize() || !stack.isSimilar(itemStack)) {
+            bucket.setMergeTarget(null);
+            return false;
+        }
         
-        this.timer.start();
+        stack.setAmount(stack.getAmount() + amount);
+        item.setItemStack(stack);
+        bucket.addAmount(amount);
+        handleItemSpawn(item, this, this.generator);
+        return true;
+    }
+    
+    public synchronized void addSpawnListener(ItemSpawnListener listener) {
+        this.itemSpawnListeners = append(this.itemSpawnListeners, listener);
     }
     
-    public void addSpawnListener(ItemSpawnListener listener) {
-        this.itemSpawnListeners.add(listener);
+    /**
+     * @param listener The listener
+     * @param mode     If the listener is called right away or on a worker thread
+     */
+    public void addSpawnListener(ItemSpawnListener listener, DispatchMode mode) {
+        if (mode == DispatchMode.ASYNC) {
+            this.asyncItemSpawnListeners.add(listener);
+        } else {
+            addSpawnListener(listener);
+        }
     }
     
     public void handleItemSpawn(Item item, ItemEntry itemEntry, ItemGenerator generator) {
-        for (ItemSpawnListener listener : this.itemSpawnListeners) {
-            listener.onSpawn(item, itemEntry, generator);
+        ItemSpawnListener[] listeners = this.itemSpawnListeners;
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i].onSpawn(item, itemEntry, generator);
+        }
+        
+        if (!this.asyncItemSpawnListeners.isEmpty()) {
+            dispatchAsync(generator, this.asyncItemSpawnListeners, listener -> listener.onSpawn(item, itemEntry, generator));
+        }
+        
+        if (generator != null && generator.getRegistry() != null) {
+            generator.getRegistry().getEventBus().publishSpawn(item, itemEntry, generator);
         }
     }
     
-    public void addPickupListener(ItemPickupListener listener) {
-        this.itemPickupListeners.add(listener);
+    public synchronized void addPrepareListener(ItemPrepareListener listener) {
+        this.itemPrepareListeners = append(this.itemPrepareListeners, listener);
+    }
+    
+    /**
+     * @param itemStack The item stack
+     * @return If the item should be spawned
+     */
+    public boolean handleItemPrepare(ItemStack itemStack) {
+        ItemPrepareListener[] listeners = this.itemPrepareListeners;
+        for (int i = 0; i < listeners.length; i++) {
+            if (!listeners[i].onPrepare(itemStack, this, this.generator)) {
+                return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    public synchronized void addPickupListener(ItemPickupListener listener) {
+        this.itemPickupListeners = append(this.itemPickupListeners, listener);
+    }
+    
+    /**
+     * @param listener The listener
+     * @param mode     If the listener is called right away or on a worker thread
+     */
+    public void addPickupListener(ItemPickupListener listener, DispatchMode mode) {
+        if (mode == DispatchMode.ASYNC) {
+            this.asyncItemPickupListeners.add(listener);
+        } else {
+            addPickupListener(listener);
+        }
     }
     
     public void handleItemPickup(LivingEntity entity, Item item, ItemEntry itemEntry) {
-        for (ItemPickupListener listener : this.itemPickupListeners) {
-            listener.onPickup(entity, item, itemEntry, generator);
+        metrics.recordPickup();
+        ItemGenerator generator = this.generator;
+        ItemPickupListener[] listeners = this.itemPickupListeners;
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i].onPickup(entity, item, itemEntry, generator);
+        }
+        
+        if (!this.asyncItemPickupListeners.isEmpty()) {
+            dispatchAsync(generator, this.asyncItemPickupListeners, listener -> listener.onPickup(entity, item, itemEntry, generator));
+        }
+        
+        if (generator != null && generator.getRegistry() != null) {
+            generator.getRegistry().getEventBus().publishPickup(entity, item, itemEntry, generator);
         }
     }
     
+    private static <L> L[] append(L[] listeners, L listener) {
+        L[] copy = Arrays.copyOf(listeners, listeners.length + 1);
+        copy[listeners.length] = listener;
+        return copy;
+    }
+    
+    /**
+     * Queues an event for async listeners, the listeners are called right away if the generator is not registered
+     */
+    private <L> void dispatchAsync(ItemGenerator generator, List<L> listeners, Consumer<L> call) {
+        GeneratorRegistry registry = generator != null ? generator.getRegistry() : null;
+        if (registry == null) {
+            for (L listener : listeners) {
+                call.accept(listener);
+            }
+            
+            return;
+        }
+        
+        registry.getListenerDispatcher().dispatch(generator.getId(), listeners, call);
+    }
+    
     public void start() {
-        if (this.timer != null) {
-            this.timer.start();
+        if (this.spawnHandle != null && this.chunkLoaded) {
+            this.spawnScheduler.unpause(this.spawnHandle);
         }
     }
     
     public void stop() {
-        if (this.timer != null) {
-            this.timer.setLengthAndReset(this.cooldown);
-            this.timer.pause();
+        if (this.spawnHandle != null) {
+            this.spawnScheduler.reset(this.spawnHandle, this.cooldown, true);
         }
     }
     
     public void pause() {
-        if (this.timer != null) {
-            this.timer.pause();
+        if (this.spawnHandle != null) {
+            this.spawnScheduler.pause(this.spawnHandle);
+        }
+        
+        //Time while the generator is stopped is not caught up
+        if (!this.chunkLoaded) {
+            this.chunkUnloadedAt = -1;
         }
     }
     
     public void unpause() {
-        if (this.timer != null) {
-            this.timer.unpause();
+        if (this.spawnHandle == null) {
+            return;
+        }
+        
+        if (this.chunkLoaded) {
+            this.spawnScheduler.unpause(this.spawnHandle);
+        } else {
+            //Started while the chunk is unloaded, so only the time from now on is caught up
+            this.chunkUnloadedAt = this.spawnScheduler.getCurrentTime();
+        }
+    }
+    
+    /**
+     * Pauses this entry because the chunk at the spawn position was unloaded <br>
+     * The time is only recorded for catching up while the generator is running
+     */
+    public void handleChunkUnload() {
+        if (!this.chunkLoaded) {
+            return;
+        }
+        
+        this.chunkLoaded = false;
+        if (this.spawnHandle != null) {
+            this.chunkUnloadedAt = generator.runningProperty.get() ? this.spawnScheduler.getCurrentTime() : -1;
+            this.spawnScheduler.pause(this.spawnHandle);
+        }
+    }
+    
+    /**
+     * Resumes this entry because the chunk at the spawn position was loaded <br>
+     * If the generator catches up on unloaded chunks, the spawns missed while unloaded are done with the next scheduled spawn
+     */
+    public void handleChunkLoad() {
+        if (this.chunkLoaded) {
+            return;
+        }
+        
+        this.chunkLoaded = true;
+        if (this.spawnHandle == null || !generator.runningProperty.get()) {
+            this.chunkUnloadedAt = -1;
+            return;
+        }
+        
+        SpawnScheduler scheduler = this.spawnScheduler;
+        if (generator.isCatchUpUnloaded() && this.chunkUnloadedAt >= 0) {
+            long missed = (scheduler.getCurrentTime() - this.chunkUnloadedAt) / Math.max(1, this.cooldown);
+            if (missed > 0) {
+                this.pendingCatchUp = (int) Math.min(missed - 1, Integer.MAX_VALUE);
+                this.chunkUnloadedAt = -1;
+                scheduler.reset(this.spawnHandle, 0, false);
+                return;
+            }
         }
+        
+        this.chunkUnloadedAt = -1;
+        scheduler.unpause(this.spawnHandle);
+    }
+    
+    public boolean isChunkLoaded() {
+        return chunkLoaded;
     }
     
     public void reset() {
+        this.initVersion++;
+        if (this.spawnHandle != null) {
+            this.spawnScheduler.cancel(this.spawnHandle);
+        }
+        
+        //The entry is indexed before it is scheduled, so it is unindexed even if the scheduling did not run yet
+        if (this.generator != null && this.generator.getRegistry() != null) {
+            this.generator.getRegistry().unindexEntryChunk(this);
+        }
+        this.spawnHandle = null;
+        this.spawnScheduler = null;
         this.generator = null;
+        this.dispatchTable = null;
         this.world = null;
-        if (this.timer != null) {
-            this.timer.cancel();
+        this.spawnLocations = null;
+    }
+    
+    public SpawnScheduler.Handle getSpawnHandle() {
+        return spawnHandle;
+    }
+    
+    /**
+     * @return The time in milliseconds until this entry spawns the next item
+     */
+    public long getTimeUntilNextSpawn() {
+        if (this.spawnHandle == null) {
+            return 0;
         }
-        this.timer = null;
+        
+        return this.spawnScheduler.getTimeRemaining(this.spawnHandle);
     }
     
-    public Timer getTimer() {
-        return timer;
+    /**
+     * The returned location must not be modified
+     *
+     * @param world      The world
+     * @param spawnPoint The index of the spawn point, the first point is used if it is out of range
+     * @return The cached location of the spawn point, or a new location at the spawn position if the entry is not initialized in the world
+     */
+    protected Location getSpawnLocation(World world, int spawnPoint) {
+        Location[] locations = this.spawnLocations;
+        if (locations == null || world != this.world) {
+            return spawnPosition.toBlockLocation(world).add(0.5, 0, 0.5);
+        }
+        
+        return locations[spawnPoint >= 0 && spawnPoint < locations.length ? spawnPoint : 0];
+    }
+    
+    /**
+     * Builds the locations of the spawn points in the world, this is done when the entry is initialized and when the spawn points change
+     *
+     * @param world The world
+     * @return The locations
+     */
+    protected Location[] buildSpawnLocations(World world) {
+        if (hasFlag(Flag.AREA_SPAWN) && this.generator != null) {
+            Position min = generator.getBoundsMin(), max = generator.getBoundsMax();
+            int minX = Math.min(min.getBlockX(), max.getBlockX()), maxX = Math.max(min.getBlockX(), max.getBlockX());
+            int minZ = Math.min(min.getBlockZ(), max.getBlockZ()), maxZ = Math.max(min.getBlockZ(), max.getBlockZ());
+            int y = Math.max(Math.min(min.getBlockY(), max.getBlockY()), Math.min(Math.max(min.getBlockY(), max.getBlockY()), spawnPosition.getBlockY()));
+            
+            int width = maxX - minX + 1, depth = maxZ - minZ + 1;
+            int step = Math.max(1, (int) Math.ceil(Math.sqrt((double) width * depth / MAX_AREA_POINTS)));
+            while ((long) ((width + step - 1) / step) * ((depth + step - 1) / step) > MAX_AREA_POINTS) {
+                step++;
+            }
+            
+            List<Location> locations = new ArrayList<>();
+            for (int x = minX; x <= maxX; x += step) {
+                for (int z = minZ; z <= maxZ; z += step) {
+                    locations.add(new Location(world, x + 0.5, y, z + 0.5));
+                }
+            }
+            
+            return locations.toArray(new Location[0]);
+        }
+        
+        List<Position> points = this.spawnPoints;
+        if (points.isEmpty()) {
+            return new Location[] {spawnPosition.toBlockLocation(world).add(0.5, 0, 0.5)};
+        }
+        
+        Location[] locations = new Location[points.size()];
+        for (int i = 0; i < locations.length; i++) {
+            locations[i] = points.get(i).toBlockLocation(world).add(0.5, 0, 0.5);
+        }
+        
+        return locations;
+    }
+    
+    /**
+     * Chooses the spawn point of the next item with the {@link #spawnStrategy}
+     *
+     * @return The index of the spawn point
+     */
+    protected int nextSpawnPoint() {
+        Location[] locations = this.spawnLocations;
+        int points = locations != null ? locations.length : 1;
+        if (points == 1) {
+            return 0;
+        }
+        
+        return switch (this.spawnStrategy) {
+            case ROUND_ROBIN -> nextRoundRobinPoint(points);
+            case RANDOM -> ThreadLocalRandom.current().nextInt(points);
+            case LEAST_POPULATED -> {
+                //Ties go to the next point in order so the items are spread while all points are equal
+                int start = nextRoundRobinPoint(points);
+                SpawnedItemBucket bucket = this.generator != null ? this.generator.getSpawnedItemBucket(this) : null;
+                yield bucket != null ? bucket.getLeastPopulatedPoint(points, start) : start;
+            }
+        };
+    }
+    
+    private int nextRoundRobinPoint(int points) {
+        int point = this.spawnPointCursor < points ? this.spawnPointCursor : 0;
+        this.spawnPointCursor = point + 1;
+        return point;
     }
     
     public Item spawnItem(World world) {
-        Location location = spawnPosition.toBlockLocation(world).add(0.5, 0, 0.5);
-        Item item = world.dropItem(location, createItemStack());
-        item.setVelocity(new Vector());
+        return spawnItem(world, createItemStack());
+    }
+    
+    /**
+     * Spawns the item stack at the next spawn point, this does not call the prepare listeners
+     *
+     * @param world     The world
+     * @param itemStack The item stack
+     * @return The item
+     */
+    public Item spawnItem(World world, ItemStack itemStack) {
+        return spawnItem(world, itemStack, nextSpawnPoint());
+    }
+    
+    /**
+     * @param world      The world
+     * @param itemStack  The item stack
+     * @param spawnPoint The index of the spawn point
+     * @return The item
+     */
+    protected Item spawnItem(World world, ItemStack itemStack, int spawnPoint) {
+        Item item = world.dropItem(getSpawnLocation(world, spawnPoint), itemStack);
+        item.setVelocity(NO_VELOCITY);
+        if (this.generator != null) {
+            SpawnedItemTags.tag(item, this.generator.getId(), getId());
+        }
         handleItemSpawn(item, this, this.generator);
         return item;
     }
@@ -198,12 +923,70 @@ public class ItemEntry {
         return id;
     }
     
+    /**
+     * Creates an entry with the same configuration that is not part of a generator, this must be called on the main thread <br>
+     * The copy shares the item template, the spawn points and the listeners with this entry instead of copying them, the spawn state and the metrics are its own
+     *
+     * @return The copy
+     */
+    public ItemEntry copy() {
+        return new ItemEntry(this);
+    }
+    
+    /**
+     * If the builder is modified directly, {@link #invalidateItemTemplate()} must be called for spawned items to reflect the changes
+     *
+     * @return The builder used to create items, this is null for entries created from an item
+     */
     public ItemBuilder<?, ?> getBuilder() {
         return builder;
     }
     
+    public void setBuilder(ItemBuilder<?, ?> builder) {
+        this.builder = builder;
+        invalidateItemTemplate();
+        markGeneratorDirty();
+    }
+    
+    /**
+     * Clears the cached item template so it is built again on the next spawn. This does nothing for entries without a builder <br>
+     * The template must be cleared before the version changes, see {@link #prepareItems()}
+     */
+    public void invalidateItemTemplate() {
+        if (this.builder != null) {
+            this.itemTemplate = null;
+        }
+        
+        this.templateVersion++;
+        this.preparedItems.clear();
+    }
+    
+    /**
+     * The returned item must not be modified, use {@link #createItemStack()} for an item that can be changed
+     *
+     * @return The cached item template, this is built if needed even for entries with {@link Flag#DYNAMIC_ITEM}
+     */
+    public ItemStack getItemTemplate() {
+        if (this.itemTemplate == null) {
+            this.itemTemplate = builder.build();
+        }
+        
+        return this.itemTemplate;
+    }
+    
+    /**
+     * @return The amount of an item this entry spawns, this is used as the amount of virtual items
+     */
+    public int getItemAmount() {
+        return getItemTemplate().getAmount();
+    }
+    
     public ItemStack createItemStack() {
-        return builder.build();
+        if (hasFlag(Flag.DYNAMIC_ITEM) && builder != null) {
+            return builder.build();
+        }
+        
+        return getItemTemplate().clone();
     }
     
     public long getCooldown() {
@@ -216,19 +999,64 @@ public class ItemEntry {
     
     public void setCooldown(long cooldown) {
         this.cooldown = cooldown;
-        if (this.timer != null) {
-            this.timer.setLengthAndReset(cooldown);
+        markGeneratorDirty();
+        if (this.spawnHandle != null) {
+            this.spawnScheduler.reset(this.spawnHandle, cooldown, this.spawnHandle.isPaused());
         }
     }
     
     public void setMaxItems(int maxItems) {
         this.maxItems = maxItems;
+        markGeneratorDirty();
+    }
+    
+    protected void markGeneratorDirty() {
+        if (this.generator != null) {
+            this.generator.markDirty();
+        }
     }
     
     public Position getSpawnPosition() {
         return spawnPosition;
     }
     
+    public List<Position> getSpawnPoints() {
+        return spawnPoints;
+    }
+    
+    /**
+     * @param spawnPoints The points items spawn at, if empty items spawn at the spawn position
+     */
+    public void setSpawnPoints(List<Position> spawnPoints) {
+        this.spawnPoints = List.copyOf(spawnPoints);
+        if (this.world != null) {
+            this.spawnLocations = buildSpawnLocations(this.world);
+        }
+        
+        markGeneratorDirty();
+    }
+    
+    public SpawnStrategy getSpawnStrategy() {
+        return spawnStrategy;
+    }
+    
+    public void setSpawnStrategy(SpawnStrategy spawnStrategy) {
+        this.spawnStrategy = spawnStrategy;
+        markGeneratorDirty();
+    }
+    
+    /**
+     * @return The amount of points items of this entry spawn at, this is only known once the entry is initialized
+     */
+    public int getSpawnPointCount() {
+        Location[] locations = this.spawnLocations;
+        return locations != null ? locations.length : Math.max(1, this.spawnPoints.size());
+    }
+    
+    public ItemGenerator getGenerator() {
+        return generator;
+    }
+    
     public World getWorld() {
         return world;
     }
@@ -240,4 +1068,32 @@ public class ItemEntry {
     public boolean hasFlag(Flag flag) {
         return this.flags.contains(flag);
     }
+    
+    /**
+     * @return An immutable copy of the state of this entry, this is safe to call from any thread
+     */
+    public EntrySnapshot snapshot() {
+        SpawnedItemBucket bucket = generator != null ? generator.getSpawnedItemBucket(this) : null;
+        Position position = this.spawnPosition;
+        //Positions are mutable, so the snapshot gets its own copy
+        return new EntrySnapshot(id, cooldown, maxItems, new Position(position.getBlockX(), position.getBlockY(), position.getBlockZ()), Collections.unmodifiableSet(EnumSet.copyOf(flags)), bucket != null ? bucket.getCount() : 0, bucket != null ? bucket.getAmount() : 0, bucket != null ? bucket.getVirtualCount() : 0);
+    }
+    
+    public EntryMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * @return The current metrics of this entry, with the items alive in the generator
+     */
+    public MetricsSnapshot getMetricsSnapshot() {
+        return metrics.snapshot(generator != null ? generator.getSpawnedItemsCount(this) : 0);
+    }
+    
+    /**
+     * @param itemStack       The item stack, or null if a prepare listener skipped the spawn
+     * @param templateVersion The template version the item was prepared from
+     */
+    private record PreparedItem(ItemStack itemStack, int templateVersion) {
+    }
 }
\ No newline at end of file
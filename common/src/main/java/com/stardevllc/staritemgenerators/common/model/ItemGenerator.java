@@ -1,5 +1,7 @@
 package com.stardevllc.staritemgenerators.common.model;
 
+import com.stardevllc.staritemgenerators.common.metrics.MetricsSnapshot;
+import com.stardevllc.staritemgenerators.common.scheduler.SpawnScheduler;
 import com.stardevllc.starlib.clock.ClockManager;
 import com.stardevllc.starlib.injector.Inject;
 import com.stardevllc.starlib.observable.collections.list.ObservableArrayList;
@@ -12,10 +14,18 @@ import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.Item;
+import org.bukkit.entity.Player;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ItemGenerator {
+    /**
+     * The minimum time in milliseconds between checking if the items of an entry with {@link ItemEntry.Flag#REGION_CAP} are inside the region
+     */
+    public static final long REGION_CHECK_INTERVAL = 1000;
+    
     /**
      * A unique identifier for the generator itself <br>
      * It is best to auto-generate this id and have the entry ids be readable
@@ -35,19 +45,75 @@ public class ItemGenerator {
     @Inject
     protected ClockManager clockManager;
     
-    protected World world;
+    @Inject
+    protected GeneratorRegistry registry;
+    
+    @Inject
+    protected SpawnScheduler spawnScheduler;
+    
+    protected volatile World world;
     
     protected final ReadWriteBooleanProperty initProperty, runningProperty;
     
-    protected final Set<SpawnedItem> spawnedItems = new HashSet<>();
+    /**
+     * All spawned items of this generator keyed by the entity unique id <br>
+     * This is concurrent so other threads can read it without locking, and so region threaded servers can change it from the region that owns an item
+     */
+    protected final Map<UUID, SpawnedItem> spawnedItems = new ConcurrentHashMap<>();
+    
+    /**
+     * The spawned items bucketed by the entry that spawned them
+     */
+    protected final Map<ItemEntry, SpawnedItemBucket> spawnedItemBuckets = new ConcurrentHashMap<>();
+    
+    /**
+     * A copy of the entries that is replaced when they change, so snapshots do not read the entry list from other threads
+     */
+    private volatile List<ItemEntry> entriesCopy;
+    
+    private final Collection<SpawnedItem> spawnedItemsView = Collections.unmodifiableCollection(spawnedItems.values());
     
     protected Cuboid region;
     
+    /**
+     * Controls if items are stored as counters while no player is near instead of being spawned in the world
+     */
+    protected volatile boolean virtual;
+    
+    /**
+     * The distance from the center of the generator bounds that a player must be within for virtual items to be spawned <br>
+     * If this is 0 or less, the player must be within the generator bounds
+     */
+    protected double materializeRadius;
+    
+    /**
+     * The total amount of virtual items across all entries
+     */
+    protected final AtomicInteger virtualItemsCount = new AtomicInteger();
+    
+    protected Location center;
+    
+    /**
+     * Controls if entries spawn the items they missed while their chunk was unloaded once it loads again
+     */
+    protected boolean catchUpUnloaded;
+    
+    /**
+     * If the saved state of this generator has changed since it was last saved. New generators start dirty
+     */
+    protected volatile boolean dirty = true;
+    
+    /**
+     * Controls if the generator is written by the storage, instances of a {@link GeneratorTemplate} are not saved as they usually only exist for a single match
+     */
+    protected volatile boolean saved = true;
+    
     public ItemGenerator(String id, List<ItemEntry> itemEntries, Position boundsMin, Position boundsMax) {
         this.id = id;
         this.itemEntries = new ObservableArrayList<>(itemEntries);
         this.initProperty = new ReadWriteBooleanProperty(this, "init", false);
         this.initProperty.addListener(c -> {
+            markDirty();
             if (c.newValue()) {
                 for (ItemEntry itemEntry : this.itemEntries) {
                     itemEntry.init(this, world);
@@ -56,10 +122,17 @@ public class ItemGenerator {
                 for (ItemEntry itemEntry : this.itemEntries) {
                     itemEntry.reset();
                 }
+                
+                untrackSpawnedItems();
+                if (this.registry != null) {
+                    this.registry.unindexGeneratorRegion(this);
+                    this.registry.releaseSpawnScheduler(this);
+                }
             }
         });
         this.runningProperty = new ReadWriteBooleanProperty(this, "running", false);
         this.runningProperty.addListener(c -> {
+            markDirty();
             if (c.newValue()) {
                 for (ItemEntry itemEntry : this.itemEntries) {
                     itemEntry.unpause();
@@ -71,13 +144,17 @@ public class ItemGenerator {
             }
         });
         
+        this.entriesCopy = List.copyOf(itemEntries);
         this.itemEntries.addListener(c -> {
+            markDirty();
+            this.entriesCopy = List.copyOf(this.itemEntries);
             if (c.added() != null) {
                 if (initProperty.get()) {
                     c.added().init(this, world);
                 }
             } else if (c.removed() != null) {
                 c.removed().reset();
+                removeSpawnedItems(c.removed());
             }
         });
         
@@ -87,8 +164,43 @@ public class ItemGenerator {
     
     public void init(World world) {
         this.world = world;
-        this.initProperty.set(true);
         this.region = new Cuboid(new Location(world, this.boundsMin.getBlockX(), this.boundsMin.getBlockY(), this.boundsMin.getBlockZ()), new Location(world, this.boundsMax.getBlockX(), this.boundsMax.getBlockY(), this.boundsMax.getBlockZ()));
+        this.center = new Location(world, (this.boundsMin.getBlockX() + this.boundsMax.getBlockX()) / 2.0 + 0.5, (this.boundsMin.getBlockY() + this.boundsMax.getBlockY()) / 2.0, (this.boundsMin.getBlockZ() + this.boundsMax.getBlockZ()) / 2.0 + 0.5);
+        if (this.registry != null) {
+            this.spawnScheduler = this.registry.acquireSpawnScheduler(this);
+        }
+        
+        this.initProperty.set(true);
+        
+        if (this.registry != null) {
+            this.registry.indexGeneratorRegion(this);
+        }
+        
+        //Chunks loaded before the generator was initialized will not fire a load event, so items from before a restart are restored here
+        //On region threaded servers the entities of each chunk can only be read by the thread that owns the chunk
+        if (this.registry != null) {
+            GeneratorRegistry registry = this.registry;
+            int minChunkX = Math.min(boundsMin.getBlockX(), boundsMax.getBlockX()) >> 4, maxChunkX = Math.max(boundsMin.getBlockX(), boundsMax.getBlockX()) >> 4;
+            int minChunkZ = Math.min(boundsMin.getBlockZ(), boundsMax.getBlockZ()) >> 4, maxChunkZ = Math.max(boundsMin.getBlockZ(), boundsMax.getBlockZ()) >> 4;
+            for (int x = minChunkX; x <= maxChunkX; x++) {
+                for (int z = minChunkZ; z <= maxChunkZ; z++) {
+                    int chunkX = x, chunkZ = z;
+                    registry.runAt(world, chunkX, chunkZ, () -> {
+                        if (world.isChunkLoaded(chunkX, chunkZ)) {
+                            registry.restoreSpawnedItems(world.getChunkAt(chunkX, chunkZ));
+                        }
+                    });
+                }
+            }
+        }
+    }
+    
+    /**
+     * Stops the generator, resets all entries and stops tracking its spawned items. This should be called before the generator is removed from the registry so it is removed from the location and item indexes
+     */
+    public void deinit() {
+        stop();
+        this.initProperty.set(false);
     }
     
     public void start() {
@@ -123,37 +235,454 @@ public class ItemGenerator {
         return contains(entity.getLocation());
     }
     
+    /**
+     * This creates a copy of the spawned items, use {@link #getSpawnedItemsView()} when a copy is not needed
+     *
+     * @return A copy of all the spawned items
+     */
     public Set<SpawnedItem> getSpawnedItems() {
-        return new HashSet<>(spawnedItems);
+        return new HashSet<>(spawnedItems.values());
     }
     
-    public void addSpawnedItem(String entryId, Item item) {
-        ItemEntry entry = getItemEntry(entryId);
+    /**
+     * @return A read-only live view of all the spawned items
+     */
+    public Collection<SpawnedItem> getSpawnedItemsView() {
+        return spawnedItemsView;
+    }
+    
+    /**
+     * @param entryId The id of the entry
+     * @return A read-only live view of the spawned items for the entry, or an empty collection if there are none
+     */
+    public Collection<SpawnedItem> getSpawnedItemsView(String entryId) {
+        SpawnedItemBucket bucket = getSpawnedItemBucket(getItemEntry(entryId));
+        return bucket != null ? bucket.getItems() : Collections.emptyList();
+    }
+    
+    public SpawnedItemBucket getSpawnedItemBucket(ItemEntry entry) {
         if (entry == null) {
+            return null;
+        }
+        
+        return this.spawnedItemBuckets.get(entry);
+    }
+    
+    public SpawnedItem getSpawnedItem(Item item) {
+        if (item == null) {
+            return null;
+        }
+        
+        return this.spawnedItems.get(item.getUniqueId());
+    }
+    
+    public void addSpawnedItem(String entryId, Item item) {
+        addSpawnedItem(getItemEntry(entryId), item);
+    }
+    
+    public void addSpawnedItem(ItemEntry entry, Item item) {
+        addSpawnedItem(entry, item, -1);
+    }
+    
+    /**
+     * @param entry      The entry
+     * @param item       The item
+     * @param spawnPoint The index of the spawn point of the entry the item spawned at, or -1 if it is not known
+     */
+    public void addSpawnedItem(ItemEntry entry, Item item, int spawnPoint) {
+        if (entry == null || item == null) {
+            return;
+        }
+        
+        SpawnedItem spawnedItem = new SpawnedItem(item, this, entry, spawnPoint);
+        this.spawnedItems.put(item.getUniqueId(), spawnedItem);
+        SpawnedItemBucket bucket = this.spawnedItemBuckets.computeIfAbsent(entry, SpawnedItemBucket::new);
+        bucket.add(spawnedItem);
+        if (entry.hasFlag(ItemEntry.Flag.REGION_CAP) && this.region != null) {
+            bucket.setOutsideRegion(spawnedItem, !contains(item.getLocation()));
+        }
+        
+        if (this.registry != null) {
+            this.registry.indexSpawnedItem(spawnedItem);
+        }
+    }
+    
+    /**
+     * Checks which items of the entry are inside the generator region. Only the tracked items are checked, the world is not searched <br>
+     * Items that are not valid, usually because their chunk is unloaded, keep their last state
+     *
+     * @param entry The entry
+     * @param force If true the items are checked even if they were checked within the {@link #REGION_CHECK_INTERVAL}
+     */
+    public void refreshRegionItems(ItemEntry entry, boolean force) {
+        SpawnedItemBucket bucket = getSpawnedItemBucket(entry);
+        if (bucket == null || this.region == null) {
+            return;
+        }
+        
+        long now = this.spawnScheduler != null ? this.spawnScheduler.getCurrentTime() : System.currentTimeMillis();
+        if (!force && now - bucket.getRegionCheckedAt() < REGION_CHECK_INTERVAL) {
+            return;
+        }
+        
+        bucket.setRegionCheckedAt(now);
+        for (SpawnedItem spawnedItem : bucket.getItems()) {
+            Item item = spawnedItem.item();
+            if (item.isValid()) {
+                bucket.setOutsideRegion(spawnedItem, !contains(item.getLocation()));
+            }
+        }
+    }
+    
+    /**
+     * Updates if a spawned item is inside the generator region because it moved, this is used for moves that have an event like teleports
+     *
+     * @param item     The item
+     * @param location The new location of the item
+     */
+    public void updateRegionItem(Item item, Location location) {
+        SpawnedItem spawnedItem = getSpawnedItem(item);
+        if (spawnedItem == null || !spawnedItem.entry().hasFlag(ItemEntry.Flag.REGION_CAP) || this.region == null) {
             return;
         }
         
-        SpawnedItem spawnedItem = new SpawnedItem(item, this, entry);
-        this.spawnedItems.add(spawnedItem);
+        SpawnedItemBucket bucket = this.spawnedItemBuckets.get(spawnedItem.entry());
+        if (bucket != null) {
+            bucket.setOutsideRegion(spawnedItem, !contains(location));
+        }
+    }
+    
+    /**
+     * @param entry The entry
+     * @return The amount of items of the entry inside the generator region including virtual items, as of the last region check
+     */
+    public int getSpawnedItemsCountInRegion(ItemEntry entry) {
+        SpawnedItemBucket bucket = getSpawnedItemBucket(entry);
+        return bucket != null ? bucket.getCountInRegion() : 0;
+    }
+    
+    /**
+     * @param entry The entry
+     * @return The total item amount of the items of the entry inside the generator region, as of the last region check
+     */
+    public int getSpawnedItemsAmountInRegion(ItemEntry entry) {
+        SpawnedItemBucket bucket = getSpawnedItemBucket(entry);
+        return bucket != null ? bucket.getAmountInRegion() : 0;
+    }
+    
+    /**
+     * Replaces the entity of a tracked item, this is used when the chunk of the item loads again as the entity from before the unload is no longer valid
+     *
+     * @param spawnedItem The tracked item
+     * @param item        The new entity with the same unique id
+     */
+    public void replaceSpawnedItem(SpawnedItem spawnedItem, Item item) {
+        SpawnedItem replacement = new SpawnedItem(item, this, spawnedItem.entry(), spawnedItem.spawnPoint());
+        this.spawnedItems.put(item.getUniqueId(), replacement);
+        SpawnedItemBucket bucket = this.spawnedItemBuckets.get(spawnedItem.entry());
+        if (bucket != null) {
+            bucket.replace(spawnedItem, replacement);
+        }
+        
+        if (this.registry != null) {
+            this.registry.indexSpawnedItem(replacement);
+        }
     }
     
     public void removedSpawnedItem(Item item) {
-        this.spawnedItems.removeIf(spawnedItem -> spawnedItem.item().equals(item));
+        if (item == null) {
+            return;
+        }
+        
+        SpawnedItem spawnedItem = this.spawnedItems.remove(item.getUniqueId());
+        if (spawnedItem == null) {
+            return;
+        }
+        
+        SpawnedItemBucket bucket = this.spawnedItemBuckets.get(spawnedItem.entry());
+        if (bucket != null) {
+            bucket.remove(item.getUniqueId());
+        }
+        
+        if (this.registry != null) {
+            this.registry.unindexSpawnedItem(item.getUniqueId());
+        }
     }
     
-    public int getSpawnedItemsCount(String entryId) {
-        int count = 0;
-        for (SpawnedItem spawnedItem : this.spawnedItems) {
-            if (spawnedItem.entry().getId().equalsIgnoreCase(entryId)) {
-                count++;
+    /**
+     * Stops tracking all items spawned by the provided entry. The item entities themselves are left in the world
+     *
+     * @param entry The entry
+     */
+    protected void removeSpawnedItems(ItemEntry entry) {
+        SpawnedItemBucket bucket = this.spawnedItemBuckets.remove(entry);
+        if (bucket == null) {
+            return;
+        }
+        
+        this.virtualItemsCount.addAndGet(-bucket.getVirtualCount());
+        for (SpawnedItem spawnedItem : bucket.getItems()) {
+            //The items stay in the world, so they must not be restored to this generator later
+            SpawnedItemTags.clear(spawnedItem.item());
+            UUID uniqueId = spawnedItem.item().getUniqueId();
+            this.spawnedItems.remove(uniqueId);
+            if (this.registry != null) {
+                this.registry.unindexSpawnedItem(uniqueId);
+            }
+        }
+        
+        bucket.clear();
+    }
+    
+    /**
+     * Stops tracking the spawned items of all entries and removes them from the registry index, virtual items are dropped <br>
+     * The items in the world keep their tags, so they are restored if the generator is initialized again
+     */
+    protected void untrackSpawnedItems() {
+        for (SpawnedItemBucket bucket : this.spawnedItemBuckets.values()) {
+            this.virtualItemsCount.addAndGet(-bucket.getVirtualCount());
+            for (SpawnedItem spawnedItem : bucket.getItems()) {
+                UUID uniqueId = spawnedItem.item().getUniqueId();
+                this.spawnedItems.remove(uniqueId);
+                if (this.registry != null) {
+                    this.registry.unindexSpawnedItem(uniqueId);
+                }
             }
+            
+            bucket.clear();
         }
         
-        return count;
+        this.spawnedItemBuckets.clear();
     }
     
+    /**
+     * Removes the spawned items of all entries from the world and stops tracking them, virtual items are dropped <br>
+     * The items are removed on the thread that owns the spawn position of their entry
+     */
+    public void clearSpawnedItems() {
+        for (SpawnedItemBucket bucket : this.spawnedItemBuckets.values()) {
+            ItemEntry entry = bucket.getEntry();
+            for (SpawnedItem spawnedItem : bucket.getItems()) {
+                Item item = spawnedItem.item();
+                entry.runAtSpawnPosition(item::remove);
+            }
+        }
+        
+        untrackSpawnedItems();
+    }
+    
+    public int getSpawnedItemsCount(String entryId) {
+        return getSpawnedItemsCount(getItemEntry(entryId));
+    }
+    
+    /**
+     * @param entry The entry
+     * @return The amount of spawned items for the entry, including virtual items
+     */
+    public int getSpawnedItemsCount(ItemEntry entry) {
+        SpawnedItemBucket bucket = getSpawnedItemBucket(entry);
+        return bucket != null ? bucket.getCount() : 0;
+    }
+    
+    /**
+     * @return The amount of spawned items, including virtual items
+     */
     public int getSpawnedItemsCount() {
-        return this.spawnedItems.size();
+        return this.spawnedItems.size() + this.virtualItemsCount.get();
+    }
+    
+    /**
+     * @param entry The entry
+     * @return The total item amount of the spawned items for the entry, this differs from the count for entries that merge stacks
+     */
+    public int getSpawnedItemsAmount(ItemEntry entry) {
+        SpawnedItemBucket bucket = getSpawnedItemBucket(entry);
+        return bucket != null ? bucket.getAmount() : 0;
+    }
+    
+    /**
+     * Creates an immutable copy of the state of this generator and its entries. This is safe to call from any thread and does not lock anything, so it does not block spawning <br>
+     * Values are read one at a time, so a snapshot taken while the generator is spawning may mix values from before and after a spawn
+     *
+     * @return The snapshot
+     */
+    public GeneratorSnapshot snapshot() {
+        List<ItemEntry> entries = this.entriesCopy;
+        List<EntrySnapshot> entrySnapshots = new ArrayList<>(entries.size());
+        for (ItemEntry entry : entries) {
+            entrySnapshots.add(entry.snapshot());
+        }
+        
+        World world = this.world;
+        return new GeneratorSnapshot(id, world != null ? world.getName() : null, initProperty.get(), runningProperty.get(), virtual, new Position(boundsMin.getBlockX(), boundsMin.getBlockY(), boundsMin.getBlockZ()), new Position(boundsMax.getBlockX(), boundsMax.getBlockY(), boundsMax.getBlockZ()), getSpawnedItemsCount(), Collections.unmodifiableList(entrySnapshots));
+    }
+    
+    /**
+     * @return The combined metrics of all entries of this generator
+     */
+    public MetricsSnapshot getMetricsSnapshot() {
+        MetricsSnapshot snapshot = MetricsSnapshot.EMPTY;
+        for (ItemEntry itemEntry : this.itemEntries) {
+            snapshot = snapshot.plus(itemEntry.getMetricsSnapshot());
+        }
+        
+        return snapshot;
+    }
+    
+    /**
+     * Marks that the saved state of this generator changed so the next autosave writes it
+     */
+    public void markDirty() {
+        if (this.dirty) {
+            return;
+        }
+        
+        this.dirty = true;
+        if (this.registry != null) {
+            this.registry.markDirty(this);
+        }
+    }
+    
+    public void clearDirty() {
+        this.dirty = false;
+    }
+    
+    public boolean isDirty() {
+        return dirty && saved;
+    }
+    
+    public boolean isSaved() {
+        return saved;
+    }
+    
+    /**
+     * @param saved If the generator is written by the storage
+     */
+    public void setSaved(boolean saved) {
+        this.saved = saved;
+        if (saved && this.dirty && this.registry != null) {
+            this.registry.markDirty(this);
+        }
+    }
+    
+    public boolean isCatchUpUnloaded() {
+        return catchUpUnloaded;
+    }
+    
+    public void setCatchUpUnloaded(boolean catchUpUnloaded) {
+        this.catchUpUnloaded = catchUpUnloaded;
+        markDirty();
+    }
+    
+    public boolean isVirtual() {
+        return virtual;
+    }
+    
+    /**
+     * Sets if this generator stores items as counters while no player is near. Turning this off spawns all stored items
+     *
+     * @param virtual The new value
+     */
+    public void setVirtual(boolean virtual) {
+        this.virtual = virtual;
+        markDirty();
+        if (!virtual && this.world != null) {
+            materializeVirtualItems();
+        }
+    }
+    
+    public double getMaterializeRadius() {
+        return materializeRadius;
+    }
+    
+    public void setMaterializeRadius(double materializeRadius) {
+        this.materializeRadius = materializeRadius;
+        markDirty();
+    }
+    
+    /**
+     * @return If a player is within the generator bounds, or within the materialize radius if it is set <br>
+     * On region threaded servers only the players owned by the current region are checked, players in other regions cannot be read from this thread
+     */
+    public boolean isPlayerNearby() {
+        if (this.world == null) {
+            return false;
+        }
+        
+        double radiusSquared = this.materializeRadius * this.materializeRadius;
+        for (Player player : this.world.getPlayers()) {
+            if (this.registry != null && !this.registry.isOwnedByCurrentThread(player)) {
+                continue;
+            }
+            
+            Location location = player.getLocation();
+            if (this.materializeRadius > 0) {
+                if (location.distanceSquared(this.center) <= radiusSquared) {
+                    return true;
+                }
+            } else if (contains(location)) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Stores an item for the entry as a counter instead of spawning it
+     *
+     * @param entry The entry
+     */
+    public void addVirtualItem(ItemEntry entry) {
+        if (entry == null) {
+            return;
+        }
+        
+        this.spawnedItemBuckets.computeIfAbsent(entry, SpawnedItemBucket::new).addVirtual(1);
+        this.virtualItemsCount.incrementAndGet();
+    }
+    
+    /**
+     * @param entry The entry
+     * @return The amount of items stored as counters for the entry
+     */
+    public int getVirtualItemsCount(ItemEntry entry) {
+        SpawnedItemBucket bucket = getSpawnedItemBucket(entry);
+        return bucket != null ? bucket.getVirtualCount() : 0;
+    }
+    
+    /**
+     * Queues the items that are stored as counters to be spawned into the world <br>
+     * The {@link SpawnScheduler} spawns them over the next ticks within its spawn budget
+     */
+    public void materializeVirtualItems() {
+        if (this.virtualItemsCount.get() == 0) {
+            return;
+        }
+        
+        for (SpawnedItemBucket bucket : new ArrayList<>(this.spawnedItemBuckets.values())) {
+            if (bucket.getVirtualCount() > 0) {
+                bucket.getEntry().queueMaterialize();
+            }
+        }
+    }
+    
+    /**
+     * Takes items that are stored as counters so they can be spawned
+     *
+     * @param entry The entry
+     * @param max   The max amount of items to take
+     * @return The amount of items that were taken
+     */
+    int takeVirtualItems(ItemEntry entry, int max) {
+        SpawnedItemBucket bucket = getSpawnedItemBucket(entry);
+        if (bucket == null) {
+            return 0;
+        }
+        
+        int amount = bucket.takeVirtual(max);
+        this.virtualItemsCount.addAndGet(-amount);
+        return amount;
     }
     
     public String getId() {
@@ -180,6 +709,14 @@ public class ItemGenerator {
         return clockManager;
     }
     
+    public GeneratorRegistry getRegistry() {
+        return registry;
+    }
+    
+    public SpawnScheduler getSpawnScheduler() {
+        return spawnScheduler;
+    }
+    
     public ReadOnlyBooleanProperty initProperty() {
         return initProperty.asReadOnly();
     }
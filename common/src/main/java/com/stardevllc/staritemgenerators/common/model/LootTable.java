@@ -0,0 +1,178 @@
+package com.stardevllc.staritemgenerators.common.model;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * An immutable set of weighted outcomes for a {@link LootTableEntry} <br>
+ * The weights are turned into alias tables when the table is created, so drawing an outcome is one random index and one random check no matter how many outcomes there are
+ */
+public final class LootTable {
+    
+    /**
+     * A possible drop of a loot table
+     *
+     * @param item      The item, this is copied and must not be modified through the outcome. The amount of the item is ignored
+     * @param weight    The weight compared to the other outcomes
+     * @param minAmount The min amount of the item
+     * @param maxAmount The max amount of the item
+     */
+    public record Outcome(ItemStack item, double weight, int minAmount, int maxAmount) {
+        public Outcome {
+            if (item == null) {
+                throw new IllegalArgumentException("The item of an outcome cannot be null");
+            }
+            
+            item = item.clone();
+            
+            if (!(weight > 0) || Double.isInfinite(weight)) {
+                throw new IllegalArgumentException("The weight of an outcome must be a positive number");
+            }
+            
+            if (minAmount < 1 || maxAmount < minAmount) {
+                throw new IllegalArgumentException("The amount range of an outcome must be at least 1 and the max must not be less than the min");
+            }
+        }
+        
+        public Outcome(ItemStack item, double weight) {
+            this(item, weight, item.getAmount(), item.getAmount());
+        }
+    }
+    
+    private final List<Outcome> outcomes;
+    
+    /**
+     * The item of every outcome with the min amount, drawn items are clones of these
+     */
+    private final ItemStack[] templates;
+    
+    /**
+     * The alias tables, an index is kept with the chance in {@link #probabilities} and otherwise replaced by the index in {@link #aliases}
+     */
+    private final double[] probabilities;
+    private final int[] aliases;
+    
+    private final int mostLikely;
+    private final double averageAmount;
+    
+    public LootTable(List<Outcome> outcomes) {
+        if (outcomes == null || outcomes.isEmpty()) {
+            throw new IllegalArgumentException("A loot table needs at least one outcome");
+        }
+        
+        this.outcomes = List.copyOf(outcomes);
+        int n = this.outcomes.size();
+        this.templates = new ItemStack[n];
+        this.probabilities = new double[n];
+        this.aliases = new int[n];
+        
+        double totalWeight = 0, weightedAmount = 0;
+        int mostLikely = 0;
+        for (int i = 0; i < n; i++) {
+            Outcome outcome = this.outcomes.get(i);
+            ItemStack template = outcome.item().clone();
+            template.setAmount(outcome.minAmount());
+            this.templates[i] = template;
+            totalWeight += outcome.weight();
+            weightedAmount += outcome.weight() * (outcome.minAmount() + outcome.maxAmount()) / 2.0;
+            if (outcome.weight() > this.outcomes.get(mostLikely).weight()) {
+                mostLikely = i;
+            }
+        }
+        
+        this.mostLikely = mostLikely;
+        this.averageAmount = weightedAmount / totalWeight;
+        
+        //Vose's alias method, the scaled weights average to 1 and every index below 1 is filled up with one index above 1
+        double[] scaled = new double[n];
+        int[] small = new int[n], large = new int[n];
+        int smallCount = 0, largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = this.outcomes.get(i).weight() * n / totalWeight;
+            if (scaled[i] < 1) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount], more = large[--largeCount];
+            this.probabilities[less] = scaled[less];
+            this.aliases[less] = more;
+            scaled[more] = scaled[more] + scaled[less] - 1;
+            if (scaled[more] < 1) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        
+        //What is left is 1 apart from rounding errors
+        while (largeCount > 0) {
+            this.probabilities[large[--largeCount]] = 1;
+        }
+        
+        while (smallCount > 0) {
+            this.probabilities[small[--smallCount]] = 1;
+        }
+    }
+    
+    /**
+     * @param random The random to use
+     * @return The index of a random outcome based on the weights
+     */
+    public int sample(RandomGenerator random) {
+        int index = random.nextInt(this.probabilities.length);
+        return random.nextDouble() < this.probabilities[index] ? index : this.aliases[index];
+    }
+    
+    /**
+     * @param random The random to use
+     * @return A new item of a random outcome with a random amount in the range of the outcome
+     */
+    public ItemStack createItemStack(RandomGenerator random) {
+        int index = sample(random);
+        ItemStack itemStack = this.templates[index].clone();
+        Outcome outcome = this.outcomes.get(index);
+        if (outcome.maxAmount() > outcome.minAmount()) {
+            itemStack.setAmount(random.nextInt(outcome.minAmount(), outcome.maxAmount() + 1));
+        }
+        
+        return itemStack;
+    }
+    
+    /**
+     * The returned item must not be modified
+     *
+     * @param index The index of the outcome
+     * @return The item of the outcome with the min amount
+     */
+    public ItemStack getTemplate(int index) {
+        return this.templates[index];
+    }
+    
+    /**
+     * @return The index of the outcome with the highest weight
+     */
+    public int getMostLikely() {
+        return mostLikely;
+    }
+    
+    /**
+     * @return The average amount of a drawn item based on the weights
+     */
+    public double getAverageAmount() {
+        return averageAmount;
+    }
+    
+    public List<Outcome> getOutcomes() {
+        return outcomes;
+    }
+    
+    public int size() {
+        return this.templates.length;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,116 @@
+package com.stardevllc.staritemgenerators.common.model;
+
+import com.stardevllc.starmclib.Position;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Collection;
+import java.util.SplittableRandom;
+
+/**
+ * An entry that draws every item from a {@link LootTable} instead of always spawning the same item <br>
+ * This replaces stacking many entries for varied drops, one timer and one count of spawned items is used for all the outcomes
+ */
+public class LootTableEntry extends ItemEntry {
+    
+    /**
+     * The loot table, this is immutable and replaced as a whole
+     */
+    protected volatile LootTable lootTable;
+    
+    /**
+     * The seed of the random, entries with the same seed and table draw the same items in the same order
+     */
+    protected final long seed;
+    
+    /**
+     * Only used from the thread that spawns the items of this entry
+     */
+    private final SplittableRandom random;
+    
+    public LootTableEntry(String id, LootTable lootTable, long seed, long cooldown, int maxItems, Position spawnPosition, Collection<Flag> flags) {
+        super(id, cooldown, maxItems, spawnPosition, flags);
+        this.lootTable = lootTable;
+        this.seed = seed;
+        this.random = new SplittableRandom(seed);
+    }
+    
+    public LootTableEntry(String id, LootTable lootTable, long cooldown, int maxItems, Position spawnPosition, Collection<Flag> flags) {
+        this(id, lootTable, new SplittableRandom().nextLong(), cooldown, maxItems, spawnPosition, flags);
+    }
+    
+    protected LootTableEntry(LootTableEntry other) {
+        this(other, other.seed);
+    }
+    
+    protected LootTableEntry(LootTableEntry other, long seed) {
+        super(other);
+        this.lootTable = other.lootTable;
+        this.seed = seed;
+        this.random = new SplittableRandom(seed);
+    }
+    
+    /**
+     * The copy shares the loot table and starts drawing from the seed, so all copies draw the same items in the same order
+     *
+     * @return The copy
+     */
+    @Override
+    public LootTableEntry copy() {
+        return new LootTableEntry(this);
+    }
+    
+    /**
+     * The copy shares the loot table and draws from its own seed
+     *
+     * @param seed The seed of the copy
+     * @return The copy
+     */
+    public LootTableEntry copy(long seed) {
+        return new LootTableEntry(this, seed);
+    }
+    
+    /**
+     * Loot is not prepared ahead, items are drawn when they spawn so the drawn sequence only depends on the seed and the spawns
+     *
+     * @return Always 0
+     */
+    @Override
+    public int prepareItems() {
+        return 0;
+    }
+    
+    @Override
+    public ItemStack createItemStack() {
+        return lootTable.createItemStack(random);
+    }
+    
+    /**
+     * @return The item of the most likely outcome, the item of a spawn is drawn with {@link #createItemStack()}
+     */
+    @Override
+    public ItemStack getItemTemplate() {
+        LootTable lootTable = this.lootTable;
+        return lootTable.getTemplate(lootTable.getMostLikely());
+    }
+    
+    /**
+     * @return The average amount of the outcomes, rounded
+     */
+    @Override
+    public int getItemAmount() {
+        return Math.max(1, (int) Math.round(lootTable.getAverageAmount()));
+    }
+    
+    public LootTable getLootTable() {
+        return lootTable;
+    }
+    
+    public void setLootTable(LootTable lootTable) {
+        this.lootTable = lootTable;
+        markGeneratorDirty();
+    }
+    
+    public long getSeed() {
+        return seed;
+    }
+}
\ No newline at end of file
@@ -2,5 +2,14 @@ package com.stardevllc.staritemgenerators.common.model;
 
 import org.bukkit.entity.Item;
 
-public record SpawnedItem(Item item, ItemGenerator generator, ItemEntry entry) {
+/**
+ * @param item       The item
+ * @param generator  The generator
+ * @param entry      The entry
+ * @param spawnPoint The index of the spawn point of the entry the item spawned at, or -1 if it is not known like for items restored after a restart
+ */
+public record SpawnedItem(Item item, ItemGenerator generator, ItemEntry entry, int spawnPoint) {
+    public SpawnedItem(Item item, ItemGenerator generator, ItemEntry entry) {
+        this(item, generator, entry, -1);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,246 @@
+package com.stardevllc.staritemgenerators.common.model;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the spawned items that belong to a single {@link ItemEntry} <br>
+ * The count is the size of the backing map and the total amount is maintained as items are added and removed, so cap checks do not need to scan anything <br>
+ * The maps are concurrent and the counts volatile so it can be read from any thread without locking, changes are synchronized as region threaded servers can change the items of an entry from different regions
+ */
+public final class SpawnedItemBucket {
+    
+    private final ItemEntry entry;
+    
+    private final Map<UUID, SpawnedItem> items = new ConcurrentHashMap<>();
+    
+    private final Collection<SpawnedItem> view = Collections.unmodifiableCollection(items.values());
+    
+    /**
+     * The total of the item stack amounts of all items in this bucket
+     */
+    private volatile int amount;
+    
+    /**
+     * The item that new spawns are added to for entries with {@link ItemEntry.Flag#STACK_MERGE}
+     */
+    private SpawnedItem mergeTarget;
+    
+    /**
+     * The amount of items at each spawn point of the entry, items without a known spawn point are not counted <br>
+     * Items keep the index they spawned at if the spawn points change, so the counts even out again as those items are removed
+     */
+    private int[] pointCounts = new int[0];
+    
+    /**
+     * The amount of items stored as counters for virtual generators, each one is a single spawn of the entry
+     */
+    private volatile int virtualCount;
+    
+    /**
+     * The items that were outside the generator region when they were last checked, this is only kept for entries with {@link ItemEntry.Flag#REGION_CAP} <br>
+     * Items in unloaded chunks keep the state from the last time they were loaded
+     */
+    private final Map<UUID, Integer> outsideRegion = new ConcurrentHashMap<>();
+    
+    /**
+     * The total of the item stack amounts of the items outside the region
+     */
+    private volatile int outsideAmount;
+    
+    /**
+     * The scheduler time the items were last checked against the generator region
+     */
+    private long regionCheckedAt = Long.MIN_VALUE;
+    
+    SpawnedItemBucket(ItemEntry entry) {
+        this.entry = entry;
+    }
+    
+    synchronized void add(SpawnedItem spawnedItem) {
+        if (this.items.put(spawnedItem.item().getUniqueId(), spawnedItem) == null) {
+            this.amount += spawnedItem.item().getItemStack().getAmount();
+            int spawnPoint = spawnedItem.spawnPoint();
+            if (spawnPoint >= 0) {
+                if (spawnPoint >= this.pointCounts.length) {
+                    this.pointCounts = Arrays.copyOf(this.pointCounts, spawnPoint + 1);
+                }
+                
+                this.pointCounts[spawnPoint]++;
+            }
+        }
+        
+        if (entry.hasFlag(ItemEntry.Flag.STACK_MERGE)) {
+            this.mergeTarget = spawnedItem;
+        }
+    }
+    
+    /**
+     * The amount is taken from the item entity, so this must be called before the item is changed or removed from the world
+     */
+    synchronized SpawnedItem remove(UUID uniqueId) {
+        SpawnedItem removed = this.items.remove(uniqueId);
+        if (removed != null) {
+            this.amount = Math.max(0, this.amount - removed.item().getItemStack().getAmount());
+            Integer outside = this.outsideRegion.remove(uniqueId);
+            if (outside != null) {
+                this.outsideAmount -= outside;
+            }
+            if (removed == this.mergeTarget) {
+                this.mergeTarget = null;
+            }
+            int spawnPoint = removed.spawnPoint();
+            if (spawnPoint >= 0 && spawnPoint < this.pointCounts.length && this.pointCounts[spawnPoint] > 0) {
+                this.pointCounts[spawnPoint]--;
+            }
+        }
+        
+        return removed;
+    }
+    
+    /**
+     * Replaces the entity of an item, the amount is kept as the stack did not change while its chunk was unloaded
+     */
+    synchronized void replace(SpawnedItem spawnedItem, SpawnedItem replacement) {
+        if (this.items.replace(spawnedItem.item().getUniqueId(), spawnedItem, replacement) && this.mergeTarget == spawnedItem) {
+            this.mergeTarget = replacement;
+        }
+    }
+    
+    synchronized void addAmount(int amount) {
+        this.amount += amount;
+    }
+    
+    synchronized void addVirtual(int count) {
+        this.virtualCount += count;
+    }
+    
+    synchronized int takeVirtual(int max) {
+        int count = Math.min(this.virtualCount, max);
+        this.virtualCount -= count;
+        return count;
+    }
+    
+    /**
+     * @param spawnedItem The item
+     * @param outside     If the item is outside the generator region
+     */
+    synchronized void setOutsideRegion(SpawnedItem spawnedItem, boolean outside) {
+        UUID uniqueId = spawnedItem.item().getUniqueId();
+        Integer previous = outside ? this.outsideRegion.put(uniqueId, spawnedItem.item().getItemStack().getAmount()) : this.outsideRegion.remove(uniqueId);
+        if (previous != null) {
+            this.outsideAmount -= previous;
+        }
+        
+        if (outside) {
+            this.outsideAmount += spawnedItem.item().getItemStack().getAmount();
+        }
+    }
+    
+    long getRegionCheckedAt() {
+        return regionCheckedAt;
+    }
+    
+    void setRegionCheckedAt(long regionCheckedAt) {
+        this.regionCheckedAt = regionCheckedAt;
+    }
+    
+    synchronized void clear() {
+        this.items.clear();
+        this.outsideRegion.clear();
+        this.outsideAmount = 0;
+        this.regionCheckedAt = Long.MIN_VALUE;
+        this.amount = 0;
+        this.mergeTarget = null;
+        this.pointCounts = new int[0];
+        this.virtualCount = 0;
+    }
+    
+    /**
+     * @param points The amount of spawn points
+     * @param start  The point to start from, ties go to the first point from here
+     * @return The spawn point with the least items
+     */
+    synchronized int getLeastPopulatedPoint(int points, int start) {
+        int best = start, bestCount = Integer.MAX_VALUE;
+        for (int i = 0; i < points; i++) {
+            int point = (start + i) % points;
+            int count = point < this.pointCounts.length ? this.pointCounts[point] : 0;
+            if (count < bestCount) {
+                best = point;
+                bestCount = count;
+                if (count == 0) {
+                    break;
+                }
+            }
+        }
+        
+        return best;
+    }
+    
+    SpawnedItem getMergeTarget() {
+        return mergeTarget;
+    }
+    
+    void setMergeTarget(SpawnedItem mergeTarget) {
+        this.mergeTarget = mergeTarget;
+    }
+    
+    public ItemEntry getEntry() {
+        return entry;
+    }
+    
+    /**
+     * @return The amount of item entities plus the virtual items
+     */
+    public int getCount() {
+        return this.items.size() + this.virtualCount;
+    }
+    
+    /**
+     * @return The total of the item stack amounts, including virtual items
+     */
+    public int getAmount() {
+        if (this.virtualCount == 0) {
+            return amount;
+        }
+        
+        return amount + this.virtualCount * entry.getItemAmount();
+    }
+    
+    /**
+     * @return The amount of items stored as counters
+     */
+    public int getVirtualCount() {
+        return virtualCount;
+    }
+    
+    /**
+     * @return The amount of item entities inside the generator region plus the virtual items, as of the last region check
+     */
+    public int getCountInRegion() {
+        return this.items.size() - this.outsideRegion.size() + this.virtualCount;
+    }
+    
+    /**
+     * @return The total of the item stack amounts inside the generator region including virtual items, as of the last region check
+     */
+    public int getAmountInRegion() {
+        return getAmount() - this.outsideAmount;
+    }
+    
+    public boolean isOutsideRegion(UUID uniqueId) {
+        return this.outsideRegion.containsKey(uniqueId);
+    }
+    
+    public boolean contains(UUID uniqueId) {
+        return this.items.containsKey(uniqueId);
+    }
+    
+    /**
+     * @return A read-only live view of the items in this bucket
+     */
+    public Collection<SpawnedItem> getItems() {
+        return view;
+    }
+}
\ No newline at end of file
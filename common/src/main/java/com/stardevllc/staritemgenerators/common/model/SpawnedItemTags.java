@@ -0,0 +1,73 @@
+package com.stardevllc.staritemgenerators.common.model;
+
+import de.tr7zw.changeme.nbtapi.NBT;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Item;
+
+/**
+ * Stores the generator and entry ids in the persistent data of spawned item entities using NBTAPI <br>
+ * This allows the ownership of items to be restored after a restart or when a chunk loads again
+ */
+public final class SpawnedItemTags {
+    private SpawnedItemTags() {
+    }
+    
+    public static final String GENERATOR_KEY = "staritemgenerators:generator";
+    public static final String ENTRY_KEY = "staritemgenerators:entry";
+    
+    private static Boolean available;
+    
+    /**
+     * @return If NBTAPI is present, tagging is skipped when it is not, for example in simulations without a server
+     */
+    public static boolean isAvailable() {
+        if (available == null) {
+            available = Bukkit.getServer() != null && Bukkit.getPluginManager().getPlugin("NBTAPI") != null;
+        }
+        
+        return available;
+    }
+    
+    public static void tag(Item item, String generatorId, String entryId) {
+        if (!isAvailable()) {
+            return;
+        }
+        
+        NBT.modifyPersistentData(item, nbt -> {
+            nbt.setString(GENERATOR_KEY, generatorId);
+            nbt.setString(ENTRY_KEY, entryId);
+        });
+    }
+    
+    public static void clear(Item item) {
+        if (!isAvailable()) {
+            return;
+        }
+        
+        NBT.modifyPersistentData(item, nbt -> {
+            nbt.removeKey(GENERATOR_KEY);
+            nbt.removeKey(ENTRY_KEY);
+        });
+    }
+    
+    /**
+     * @param item The item entity
+     * @return The owner stored on the item, or null if the item was not spawned by a generator
+     */
+    public static Owner read(Item item) {
+        if (!isAvailable()) {
+            return null;
+        }
+        
+        return NBT.getPersistentData(item, nbt -> {
+            if (!nbt.hasTag(GENERATOR_KEY) || !nbt.hasTag(ENTRY_KEY)) {
+                return null;
+            }
+            
+            return new Owner(nbt.getString(GENERATOR_KEY), nbt.getString(ENTRY_KEY));
+        });
+    }
+    
+    public record Owner(String generatorId, String entryId) {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,330 @@
+package com.stardevllc.staritemgenerators.common.model.listener;
+
+import com.stardevllc.staritemgenerators.common.model.ItemEntry;
+import com.stardevllc.staritemgenerators.common.model.ItemGenerator;
+import org.bukkit.entity.Item;
+import org.bukkit.entity.LivingEntity;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Calls the listeners that use {@link DispatchMode#ASYNC} off the server threads <br>
+ * Every generator has its own lane of events that is drained by at most one worker at a time, so events of a generator are delivered in order while different generators are delivered in parallel. <br>
+ * A worker delivers up to the batch size of events before the lane is handed back to the executor. The total amount of queued events is bounded, events over the capacity are dropped and counted
+ */
+public class AsyncListenerDispatcher implements AutoCloseable {
+    
+    public static final int DEFAULT_CAPACITY = 10_000;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    
+    private final ExecutorService executor;
+    private final Logger logger;
+    
+    /**
+     * The lanes keyed by the generator id, these are kept when they are empty as there is at most one per generator until it is removed
+     */
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    
+    private final AtomicInteger queued = new AtomicInteger();
+    
+    private volatile boolean closed;
+    
+    private volatile int capacity = DEFAULT_CAPACITY;
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+    
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAccumulator maxQueued = new LongAccumulator(Math::max, 0);
+    
+    /**
+     * Creates a dispatcher that delivers events on virtual threads
+     *
+     * @param logger The logger for errors thrown by listeners
+     */
+    public AsyncListenerDispatcher(Logger logger) {
+        this(Executors.newVirtualThreadPerTaskExecutor(), logger);
+    }
+    
+    /**
+     * @param executor The executor that delivers the events, this is shut down by {@link #close()}
+     * @param logger   The logger for errors thrown by listeners
+     */
+    public AsyncListenerDispatcher(ExecutorService executor, Logger logger) {
+        this.executor = executor;
+        this.logger = logger;
+    }
+    
+    /**
+     * Queues an event for the listeners
+     *
+     * @param generatorId The id of the generator the event happened in, events with the same id are delivered in order
+     * @param listeners   The listeners, this is read when the event is delivered
+     * @param call        Calls a single listener with the event
+     * @param <L>         The type of the listeners
+     * @return If the event was queued, false if the queue was full and the event was dropped
+     */
+    public <L> boolean dispatch(String generatorId, List<L> listeners, Consumer<L> call) {
+        return enqueue(generatorId, new ListEvent<>(listeners, call));
+    }
+    
+    /**
+     * Queues an event for the listeners, the values of the event are stored in the event instead of a capturing lambda so only the event is created
+     *
+     * @param generatorId The id of the generator the event happened in, events with the same id are delivered in order
+     * @param listeners   The listeners, this array must not be changed after it is passed
+     * @param call        Calls a single listener with the values of the event, this should be a constant
+     * @param entity      The entity of the event, or null
+     * @param item        The item
+     * @param entry       The entry
+     * @param generator   The generator
+     * @param <L>         The type of the listeners
+     * @return If the event was queued, false if the queue was full and the event was dropped
+     */
+    public <L> boolean dispatch(String generatorId, L[] listeners, EventCall<L> call, LivingEntity entity, Item item, ItemEntry entry, ItemGenerator generator) {
+        return enqueue(generatorId, new ArrayEvent<>(listeners, call, entity, item, entry, generator));
+    }
+    
+    private boolean enqueue(String generatorId, Event event) {
+        if (closed) {
+            dropped.increment();
+            return false;
+        }
+        
+        int size = queued.incrementAndGet();
+        if (size > capacity) {
+            queued.decrementAndGet();
+            dropped.increment();
+            return false;
+        }
+        
+        submitted.increment();
+        maxQueued.accumulate(size);
+        Lane lane = lanes.computeIfAbsent(generatorId, id -> new Lane());
+        lane.events.add(event);
+        lane.schedule();
+        return true;
+    }
+    
+    /**
+     * Releases the lane of a generator that was removed. Events that are already queued are still delivered
+     *
+     * @param generatorId The id of the generator
+     */
+    public void removeLane(String generatorId) {
+        lanes.remove(generatorId);
+    }
+    
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    /**
+     * @param capacity The max amount of events that can be queued across all generators
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+    
+    public int getBatchSize() {
+        return batchSize;
+    }
+    
+    /**
+     * @param batchSize The max amount of events a worker delivers for a generator before other generators get a turn
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+    
+    /**
+     * @return The amount of events waiting to be delivered
+     */
+    public int getQueued() {
+        return queued.get();
+    }
+    
+    public long getMaxQueued() {
+        return maxQueued.get();
+    }
+    
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+    
+    public long getDelivered() {
+        return delivered.sum();
+    }
+    
+    /**
+     * @return The amount of events that were dropped because the queue was full
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+    
+    public long getBatches() {
+        return batches.sum();
+    }
+    
+    /**
+     * @return The amount of times a listener threw an exception
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+    
+    public void resetMetrics() {
+        this.submitted.reset();
+        this.delivered.reset();
+        this.dropped.reset();
+        this.batches.reset();
+        this.failures.reset();
+        this.maxQueued.reset();
+    }
+    
+    /**
+     * Stops accepting new events and waits a few seconds for the queued events to be delivered
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warning("Dropped " + queued.get() + " async listener event(s) that were not delivered in time");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private final class Lane implements Runnable {
+        private final Queue<Event> events = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        
+        private void schedule() {
+            if (!scheduled.compareAndSet(false, true)) {
+                return;
+            }
+            
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+            }
+        }
+        
+        @Override
+        public void run() {
+            while (true) {
+                int count = 0, limit = batchSize;
+                Event event;
+                while (count < limit && (event = events.poll()) != null) {
+                    queued.decrementAndGet();
+                    event.deliver();
+                    count++;
+                }
+                
+                delivered.add(count);
+                batches.increment();
+                
+                //Events added after the last poll but before this would not schedule the lane, so it is checked again
+                scheduled.set(false);
+                if (events.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                    return;
+                }
+                
+                try {
+                    executor.execute(this);
+                    return;
+                } catch (RejectedExecutionException e) {
+                    //The dispatcher is closing, so the rest of the lane is delivered by this worker before it stops
+                }
+            }
+        }
+    }
+    
+    /**
+     * Calls a single listener with the values of an event
+     *
+     * @param <L> The type of the listeners
+     */
+    @FunctionalInterface
+    public interface EventCall<L> {
+        void call(L listener, LivingEntity entity, Item item, ItemEntry entry, ItemGenerator generator);
+    }
+    
+    private interface Event {
+        void deliver();
+    }
+    
+    private void handleFailure(RuntimeException e) {
+        failures.increment();
+        logger.log(Level.WARNING, "An async item entry listener threw an exception", e);
+    }
+    
+    private final class ListEvent<L> implements Event {
+        private final List<L> listeners;
+        private final Consumer<L> call;
+        
+        private ListEvent(List<L> listeners, Consumer<L> call) {
+            this.listeners = listeners;
+            this.call = call;
+        }
+        
+        @Override
+        public void deliver() {
+            for (L listener : listeners) {
+                try {
+                    call.accept(listener);
+                } catch (RuntimeException e) {
+                    handleFailure(e);
+                }
+            }
+        }
+    }
+    
+    private final class ArrayEvent<L> implements Event {
+        private final L[] listeners;
+        private final EventCall<L> call;
+        private final LivingEntity entity;
+        private final Item item;
+        private final ItemEntry entry;
+        private final ItemGenerator generator;
+        
+        private ArrayEvent(L[] listeners, EventCall<L> call, LivingEntity entity, Item item, ItemEntry entry, ItemGenerator generator) {
+            this.listeners = listeners;
+            this.call = call;
+            this.entity = entity;
+            this.item = item;
+            this.entry = entry;
+            this.generator = generator;
+        }
+        
+        @Override
+        public void deliver() {
+            for (int i = 0; i < listeners.length; i++) {
+                try {
+                    call.call(listeners[i], entity, item, entry, generator);
+                } catch (RuntimeException e) {
+                    handleFailure(e);
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,17 @@
+package com.stardevllc.staritemgenerators.common.model.listener;
+
+/**
+ * How an entry listener is called
+ */
+public enum DispatchMode {
+    /**
+     * The listener is called right away on the thread of the spawn or pickup. Use this for listeners that need to change the item or the world
+     */
+    SYNC,
+    
+    /**
+     * The listener is called in batches on a worker thread by the {@link AsyncListenerDispatcher}, in the order the events happened for each generator <br>
+     * Use this for listeners that do I/O like stats and economy listeners. The listener must not change the item or the world, and events are dropped when the queue is full
+     */
+    ASYNC
+}
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.stardevllc.staritemgenerators.common.model.listener;
+
+import com.stardevllc.staritemgenerators.common.model.ItemEntry;
+import com.stardevllc.staritemgenerators.common.model.ItemGenerator;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Called with the item stack of an item before it is spawned. This can be called off the main thread when the spawn is prepared ahead, so it must not touch the world <br>
+ * This is also called for entries with {@link ItemEntry.Flag#STACK_MERGE}, the amount of the prepared stack is added to the existing item when it is merged
+ */
+@FunctionalInterface
+public interface ItemPrepareListener extends ItemEntryListener {
+    /**
+     * @param itemStack The item stack that will be spawned or merged, this can be changed
+     * @param entry     The entry
+     * @param generator The generator
+     * @return If the item should be spawned, returning false skips this spawn
+     */
+    boolean onPrepare(ItemStack itemStack, ItemEntry entry, ItemGenerator generator);
+}
\ No newline at end of file
@@ -0,0 +1,98 @@
+package com.stardevllc.staritemgenerators.common.scheduler;
+
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Runs the tasks of the plugin on the threads the server expects them on <br>
+ * On a normal server everything that touches the world runs on the main thread. On a region threaded server like Folia every chunk is owned by a region thread and the Bukkit scheduler cannot be used
+ */
+public interface ExecutionBackend {
+    
+    /**
+     * @param plugin The plugin that owns the tasks
+     * @return The backend for the server the plugin is running on
+     */
+    static ExecutionBackend create(Plugin plugin) {
+        if (FoliaExecutionBackend.isSupported()) {
+            return new FoliaExecutionBackend(plugin);
+        }
+        
+        return new BukkitExecutionBackend(plugin);
+    }
+    
+    /**
+     * @return If chunks are owned by different threads, if false everything runs on the main thread
+     */
+    boolean isRegionThreaded();
+    
+    /**
+     * @param world  The world
+     * @param chunkX The chunk x
+     * @param chunkZ The chunk z
+     * @return If the current thread is allowed to change the chunk and the entities in it
+     */
+    boolean isOwnedByCurrentThread(World world, int chunkX, int chunkZ);
+    
+    /**
+     * @param entity The entity
+     * @return If the current thread is allowed to read and change the entity
+     */
+    boolean isOwnedByCurrentThread(Entity entity);
+    
+    /**
+     * Runs a task that is not tied to a location, this is the main thread or the global region thread
+     *
+     * @param task The task
+     */
+    void runGlobal(Runnable task);
+    
+    /**
+     * @param task        The task
+     * @param delayTicks  The delay in ticks
+     * @param periodTicks The period in ticks
+     * @return The task
+     */
+    Task runGlobalTimer(Runnable task, long delayTicks, long periodTicks);
+    
+    /**
+     * Runs a task on the thread that owns the chunk, the task is run right away if the current thread owns it
+     *
+     * @param world  The world
+     * @param chunkX The chunk x
+     * @param chunkZ The chunk z
+     * @param task   The task
+     */
+    void runAt(World world, int chunkX, int chunkZ, Runnable task);
+    
+    /**
+     * Runs a task on an interval on the thread that owns the chunk
+     *
+     * @param world       The world
+     * @param chunkX      The chunk x
+     * @param chunkZ      The chunk z
+     * @param task        The task
+     * @param delayTicks  The delay in ticks
+     * @param periodTicks The period in ticks
+     * @return The task
+     */
+    Task runRegionTimer(World world, int chunkX, int chunkZ, Runnable task, long delayTicks, long periodTicks);
+    
+    /**
+     * Runs a task on an interval off the server threads, the task must not touch the world
+     *
+     * @param task        The task
+     * @param delayTicks  The delay in ticks
+     * @param periodTicks The period in ticks
+     * @return The task
+     */
+    Task runAsyncTimer(Runnable task, long delayTicks, long periodTicks);
+    
+    /**
+     * A repeating task that was started by a backend
+     */
+    interface Task {
+        void cancel();
+    }
+}
\ No newline at end of file
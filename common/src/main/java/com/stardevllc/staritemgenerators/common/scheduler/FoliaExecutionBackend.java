@@ -0,0 +1,171 @@
+package com.stardevllc.staritemgenerators.common.scheduler;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Runs tasks with the region, global region and async schedulers of Folia <br>
+ * The plugin is compiled against the Bukkit API, so the Folia schedulers are looked up once with method handles and called through them
+ */
+public class FoliaExecutionBackend implements ExecutionBackend {
+    
+    private static final String SCHEDULER_PACKAGE = "io.papermc.paper.threadedregions.scheduler.";
+    
+    private final Plugin plugin;
+    
+    private final MethodHandle isOwnedByCurrentRegion, isEntityOwnedByCurrentRegion, isGlobalTickThread;
+    private final MethodHandle globalExecute, globalRunAtFixedRate;
+    private final MethodHandle regionExecute, regionRunAtFixedRate;
+    private final MethodHandle asyncRunAtFixedRate;
+    private final MethodHandle cancelTask;
+    
+    /**
+     * @return If the server is region threaded
+     */
+    public static boolean isSupported() {
+        try {
+            Class.forName("io.papermc.paper.threadedregions.RegionizedServer");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+    
+    public FoliaExecutionBackend(Plugin plugin) {
+        this.plugin = plugin;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Server server = Bukkit.getServer();
+            Class<?> globalClass = Class.forName(SCHEDULER_PACKAGE + "GlobalRegionScheduler");
+            Class<?> regionClass = Class.forName(SCHEDULER_PACKAGE + "RegionScheduler");
+            Class<?> asyncClass = Class.forName(SCHEDULER_PACKAGE + "AsyncScheduler");
+            Class<?> taskClass = Class.forName(SCHEDULER_PACKAGE + "ScheduledTask");
+            
+            Object global = lookup.findVirtual(Server.class, "getGlobalRegionScheduler", MethodType.methodType(globalClass)).invoke(server);
+            Object region = lookup.findVirtual(Server.class, "getRegionScheduler", MethodType.methodType(regionClass)).invoke(server);
+            Object async = lookup.findVirtual(Server.class, "getAsyncScheduler", MethodType.methodType(asyncClass)).invoke(server);
+            
+            //The handles are bound and adapted to Object so the call sites do not need the Folia classes
+            this.isOwnedByCurrentRegion = lookup.findVirtual(Server.class, "isOwnedByCurrentRegion", MethodType.methodType(boolean.class, World.class, int.class, int.class)).bindTo(server);
+            this.isEntityOwnedByCurrentRegion = lookup.findVirtual(Server.class, "isOwnedByCurrentRegion", MethodType.methodType(boolean.class, Entity.class)).bindTo(server);
+            this.isGlobalTickThread = lookup.findVirtual(Server.class, "isGlobalTickThread", MethodType.methodType(boolean.class)).bindTo(server);
+            this.globalExecute = lookup.findVirtual(globalClass, "execute", MethodType.methodType(void.class, Plugin.class, Runnable.class)).bindTo(global);
+            this.globalRunAtFixedRate = lookup.findVirtual(globalClass, "runAtFixedRate", MethodType.methodType(taskClass, Plugin.class, Consumer.class, long.class, long.class)).bindTo(global).asType(MethodType.methodType(Object.class, Plugin.class, Consumer.class, long.class, long.class));
+            this.regionExecute = lookup.findVirtual(regionClass, "execute", MethodType.methodType(void.class, Plugin.class, World.class, int.class, int.class, Runnable.class)).bindTo(region);
+            this.regionRunAtFixedRate = lookup.findVirtual(regionClass, "runAtFixedRate", MethodType.methodType(taskClass, Plugin.class, World.class, int.class, int.class, Consumer.class, long.class, long.class)).bindTo(region).asType(MethodType.methodType(Object.class, Plugin.class, World.class, int.class, int.class, Consumer.class, long.class, long.class));
+            this.asyncRunAtFixedRate = lookup.findVirtual(asyncClass, "runAtFixedRate", MethodType.methodType(taskClass, Plugin.class, Consumer.class, long.class, long.class, TimeUnit.class)).bindTo(async).asType(MethodType.methodType(Object.class, Plugin.class, Consumer.class, long.class, long.class, TimeUnit.class));
+            this.cancelTask = lookup.findVirtual(taskClass, "cancel", MethodType.methodType(Class.forName(SCHEDULER_PACKAGE + "ScheduledTask$CancelledState"))).asType(MethodType.methodType(void.class, Object.class));
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not find the Folia schedulers", e);
+        }
+    }
+    
+    @Override
+    public boolean isRegionThreaded() {
+        return true;
+    }
+    
+    @Override
+    public boolean isOwnedByCurrentThread(World world, int chunkX, int chunkZ) {
+        try {
+            return (boolean) isOwnedByCurrentRegion.invokeExact(world, chunkX, chunkZ);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+    
+    @Override
+    public boolean isOwnedByCurrentThread(Entity entity) {
+        try {
+            return (boolean) isEntityOwnedByCurrentRegion.invokeExact(entity);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+    
+    @Override
+    public void runGlobal(Runnable task) {
+        try {
+            if ((boolean) isGlobalTickThread.invokeExact()) {
+                task.run();
+            } else {
+                globalExecute.invokeExact(plugin, task);
+            }
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+    
+    @Override
+    public Task runGlobalTimer(Runnable task, long delayTicks, long periodTicks) {
+        try {
+            //Folia does not allow a delay of 0 for fixed rate tasks
+            return wrap(globalRunAtFixedRate.invokeExact(plugin, (Consumer<?>) scheduled -> task.run(), Math.max(1, delayTicks), periodTicks));
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+    
+    @Override
+    public void runAt(World world, int chunkX, int chunkZ, Runnable task) {
+        if (isOwnedByCurrentThread(world, chunkX, chunkZ)) {
+            task.run();
+            return;
+        }
+        
+        try {
+            regionExecute.invokeExact(plugin, world, chunkX, chunkZ, task);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+    
+    @Override
+    public Task runRegionTimer(World world, int chunkX, int chunkZ, Runnable task, long delayTicks, long periodTicks) {
+        try {
+            return wrap(regionRunAtFixedRate.invokeExact(plugin, world, chunkX, chunkZ, (Consumer<?>) scheduled -> task.run(), Math.max(1, delayTicks), periodTicks));
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+    
+    @Override
+    public Task runAsyncTimer(Runnable task, long delayTicks, long periodTicks) {
+        try {
+            return wrap(asyncRunAtFixedRate.invokeExact(plugin, (Consumer<?>) scheduled -> task.run(), delayTicks * 50L, periodTicks * 50L, TimeUnit.MILLISECONDS));
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+    
+    private Task wrap(Object scheduledTask) {
+        return () -> {
+            try {
+                cancelTask.invokeExact(scheduledTask);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        };
+    }
+    
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        
+        if (e instanceof Error error) {
+            throw error;
+        }
+        
+        return new IllegalStateException(e);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,131 @@
+package com.stardevllc.staritemgenerators.common.scheduler;
+
+import com.stardevllc.staritemgenerators.common.model.ItemEntry;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Prepares the items of the entries that are due on the next tick on a worker thread, so the spawn on the main thread only has to put the prepared item into the world <br>
+ * Only one batch is prepared at a time. If the worker is still busy when the next batch is submitted that batch is dropped, and those entries create their items when they spawn like they do without a preparer
+ */
+public class SpawnPreparer implements AutoCloseable {
+    
+    private final Executor executor;
+    private final boolean ownsExecutor;
+    private final Logger logger;
+    
+    private final AtomicBoolean busy = new AtomicBoolean();
+    
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder droppedBatches = new LongAdder();
+    private final LongAdder preparedItems = new LongAdder();
+    
+    /**
+     * Creates a preparer with its own daemon worker thread
+     *
+     * @param logger The logger for errors from prepare listeners
+     */
+    public SpawnPreparer(Logger logger) {
+        this(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "StarItemGenerators-SpawnPreparer");
+            thread.setDaemon(true);
+            return thread;
+        }), true, logger);
+    }
+    
+    /**
+     * @param executor The executor that prepares the batches, this is not shut down by {@link #close()}
+     * @param logger   The logger for errors from prepare listeners
+     */
+    public SpawnPreparer(Executor executor, Logger logger) {
+        this(executor, false, logger);
+    }
+    
+    private SpawnPreparer(Executor executor, boolean ownsExecutor, Logger logger) {
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.logger = logger;
+    }
+    
+    /**
+     * Prepares the items of the entries on the worker
+     *
+     * @param entries The entries, the list must not be changed after it is submitted
+     * @return If the batch was accepted, false if the worker was still busy with the previous batch
+     */
+    public boolean submit(List<ItemEntry> entries) {
+        if (entries.isEmpty()) {
+            return true;
+        }
+        
+        if (!busy.compareAndSet(false, true)) {
+            droppedBatches.increment();
+            return false;
+        }
+        
+        try {
+            executor.execute(() -> prepare(entries));
+        } catch (RejectedExecutionException e) {
+            busy.set(false);
+            droppedBatches.increment();
+            return false;
+        }
+        
+        batches.increment();
+        return true;
+    }
+    
+    private void prepare(List<ItemEntry> entries) {
+        try {
+            for (ItemEntry entry : entries) {
+                try {
+                    preparedItems.add(entry.prepareItems());
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "Could not prepare the items of entry " + entry.getId(), e);
+                }
+            }
+        } finally {
+            busy.set(false);
+        }
+    }
+    
+    /**
+     * @return If the worker is preparing a batch
+     */
+    public boolean isBusy() {
+        return busy.get();
+    }
+    
+    public long getBatches() {
+        return batches.sum();
+    }
+    
+    /**
+     * @return The amount of batches that were dropped because the worker was still busy
+     */
+    public long getDroppedBatches() {
+        return droppedBatches.sum();
+    }
+    
+    public long getPreparedItems() {
+        return preparedItems.sum();
+    }
+    
+    public void resetMetrics() {
+        this.batches.reset();
+        this.droppedBatches.reset();
+        this.preparedItems.reset();
+    }
+    
+    @Override
+    public void close() {
+        if (ownsExecutor && executor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,596 @@
+package com.stardevllc.staritemgenerators.common.scheduler;
+
+import com.stardevllc.staritemgenerators.common.model.ItemEntry;
+
+import java.util.*;
+import java.util.function.LongSupplier;
+
+/**
+ * A single scheduler that drives the spawning of every {@link ItemEntry} <br>
+ * Entries are kept in a min-heap keyed by the time they are next due, so each tick only looks at the entries that are actually due instead of every entry. <br>
+ * A spawn budget can limit the spawns and time spent per tick, entries over the budget are deferred to the next tick in the order they became due. <br>
+ * Items of virtual generators that are materialized are spawned with the budget that is left after the entries that are due. <br>
+ * This is meant to be run once per server tick on the thread that owns the entries. The methods are synchronized so handles can be controlled from other threads on region threaded servers, on a normal server the lock is never contended <br>
+ * The lock is never held while items are spawned, so spawns, listeners and the event bus do not block other threads that control handles
+ */
+public class SpawnScheduler implements Runnable {
+    
+    /**
+     * The source of time in milliseconds. This can be replaced for simulations
+     */
+    protected final LongSupplier clock;
+    
+    private Handle[] heap = new Handle[64];
+    private int size;
+    
+    /**
+     * Reused between ticks to hold the entries that are due
+     */
+    private final List<Handle> dueBatch = new ArrayList<>();
+    
+    /**
+     * Entries that were due but did not fit in the budget of a previous tick
+     */
+    private final Deque<Handle> deferred = new ArrayDeque<>();
+    
+    /**
+     * Entries that have items stored as counters waiting to be spawned, they take turns each tick
+     */
+    private final Deque<Handle> materializing = new ArrayDeque<>();
+    
+    /**
+     * The max amount of items that can be spawned in a single tick, 0 or less is unlimited
+     */
+    private int maxSpawnsPerTick;
+    
+    /**
+     * The max time in nanoseconds that can be spent spawning in a single tick, 0 or less is unlimited
+     */
+    private long maxNanosPerTick;
+    
+    /**
+     * The max random offset in milliseconds that is added when an entry is scheduled fresh, so entries with the same cooldown do not all fire on the same tick
+     */
+    private long phaseSpread;
+    
+    private final SplittableRandom random = new SplittableRandom();
+    
+    /**
+     * Prepares the items of the entries that are due soon on a worker thread, or null to create the items when they spawn
+     */
+    private SpawnPreparer preparer;
+    
+    /**
+     * How far ahead in milliseconds entries are prepared, this should be at least the length of a tick
+     */
+    private long prepareAhead = 50;
+    
+    /**
+     * Reused between ticks to search the heap for the entries that are due soon
+     */
+    private int[] searchStack = new int[64];
+    
+    /**
+     * Only written by the ticking thread, these are volatile as the metrics are read from other threads like the exporter
+     */
+    private volatile long tickCount, totalFired, totalTickNanos, lastTickNanos, maxTickNanos, totalDeferred;
+    private volatile int lastTickFired, lastTickDeferred;
+    
+    public SpawnScheduler() {
+        this(() -> System.nanoTime() / 1_000_000L);
+    }
+    
+    public SpawnScheduler(LongSupplier clock) {
+        this.clock = clock;
+    }
+    
+    @Override
+    public void run() {
+        tick();
+    }
+    
+    /**
+     * Fires deferred entries and then all entries that are due, until the spawn budget runs out <br>
+     * The lock is only held to take the due entries and to reschedule them, the spawns and their listeners run without it so they can control handles from other threads. <br>
+     * This must only be called by one thread at a time
+     */
+    public void tick() {
+        long start = System.nanoTime();
+        long now;
+        synchronized (this) {
+            now = clock.getAsLong();
+            while (!deferred.isEmpty()) {
+                Handle handle = deferred.poll();
+                if (handle.deferred) {
+                    handle.deferred = false;
+                    dueBatch.add(handle);
+                }
+            }
+            
+            while (size > 0 && heap[0].due <= now) {
+                dueBatch.add(poll());
+            }
+        }
+        
+        int fired = 0, spawned = 0, deferredCount = 0;
+        boolean overBudget = false;
+        for (int i = 0; i < dueBatch.size(); i++) {
+            Handle handle = dueBatch.get(i);
+            long due;
+            if (!overBudget) {
+                overBudget = (maxSpawnsPerTick > 0 && spawned >= maxSpawnsPerTick) || (maxNanosPerTick > 0 && System.nanoTime() - start >= maxNanosPerTick);
+            }
+            
+            synchronized (this) {
+                //The handle can be paused, cancelled or rescheduled from another thread since it was taken
+                if (handle.cancelled || handle.paused || handle.heapIndex != -1 || handle.deferred) {
+                    continue;
+                }
+                
+                if (overBudget) {
+                    handle.deferred = true;
+                    deferred.add(handle);
+                    deferredCount++;
+                    handle.entry.getMetrics().recordDeferred();
+                    continue;
+                }
+                
+                due = handle.due;
+            }
+            
+            fired++;
+            handle.entry.getMetrics().recordFire(now - due);
+            //Catch up bursts are charged for every item and are cut off at the budget
+            spawned += handle.entry.handleScheduledSpawn(maxSpawnsPerTick > 0 ? maxSpawnsPerTick - spawned : Integer.MAX_VALUE);
+            
+            synchronized (this) {
+                //The entry can be paused, cancelled or rescheduled by the spawn or its listeners
+                if (!handle.cancelled && !handle.paused && handle.heapIndex == -1) {
+                    handle.due = now + Math.max(1, handle.entry.getCooldown());
+                    offer(handle);
+                }
+            }
+        }
+        
+        dueBatch.clear();
+        
+        int materializeCount;
+        synchronized (this) {
+            materializeCount = materializing.size();
+        }
+        
+        for (int i = 0; i < materializeCount; i++) {
+            Handle handle;
+            synchronized (this) {
+                handle = materializing.poll();
+                //Cancelled handles are skipped here instead of searching the queue
+                if (handle == null || !handle.materializing) {
+                    continue;
+                }
+            }
+            
+            if (!overBudget) {
+                overBudget = (maxSpawnsPerTick > 0 && spawned >= maxSpawnsPerTick) || (maxNanosPerTick > 0 && System.nanoTime() - start >= maxNanosPerTick);
+            }
+            
+            if (!overBudget) {
+                spawned += handle.entry.materializeVirtualItems(maxSpawnsPerTick > 0 ? maxSpawnsPerTick - spawned : Integer.MAX_VALUE);
+            }
+            
+            synchronized (this) {
+                if (!handle.cancelled && handle.entry.getGenerator().getVirtualItemsCount(handle.entry) > 0) {
+                    materializing.add(handle);
+                } else {
+                    handle.materializing = false;
+                }
+            }
+        }
+        
+        if (preparer != null) {
+            synchronized (this) {
+                prepareUpcoming(now + prepareAhead);
+            }
+        }
+        
+        long elapsed = System.nanoTime() - start;
+        this.tickCount++;
+        this.totalFired += fired;
+        this.lastTickFired = fired;
+        this.totalDeferred += deferredCount;
+        this.lastTickDeferred = deferredCount;
+        this.lastTickNanos = elapsed;
+        this.totalTickNanos += elapsed;
+        if (elapsed > this.maxTickNanos) {
+            this.maxTickNanos = elapsed;
+        }
+    }
+    
+    /**
+     * Submits the entries that are due before the limit to the preparer, the heap is only searched down to the entries that are due later
+     *
+     * @param limit The time limit
+     */
+    private void prepareUpcoming(long limit) {
+        if (deferred.isEmpty() && (size == 0 || heap[0].due > limit)) {
+            return;
+        }
+        
+        List<ItemEntry> upcoming = new ArrayList<>();
+        for (Handle handle : deferred) {
+            if (handle.deferred) {
+                upcoming.add(handle.entry);
+            }
+        }
+        
+        if (size > 0 && heap[0].due <= limit) {
+            if (searchStack.length < size) {
+                searchStack = new int[heap.length];
+            }
+            
+            int top = 0;
+            searchStack[top++] = 0;
+            while (top > 0) {
+                int index = searchStack[--top];
+                Handle handle = heap[index];
+                if (handle.due > limit) {
+                    continue;
+                }
+                
+                upcoming.add(handle.entry);
+                int child = (index << 1) + 1;
+                if (child < size) {
+                    searchStack[top++] = child;
+                }
+                
+                if (child + 1 < size) {
+                    searchStack[top++] = child + 1;
+                }
+            }
+        }
+        
+        preparer.submit(upcoming);
+    }
+    
+    /**
+     * Schedules an entry to spawn after the delay, the phase spread is added to the delay
+     *
+     * @param entry  The entry
+     * @param delay  The delay in milliseconds
+     * @param paused If the entry should start paused
+     * @return The handle used to control the entry within this scheduler
+     */
+    public synchronized Handle schedule(ItemEntry entry, long delay, boolean paused) {
+        Handle handle = new Handle(entry);
+        reset(handle, applyPhaseSpread(delay), paused);
+        return handle;
+    }
+    
+    private long applyPhaseSpread(long delay) {
+        if (phaseSpread <= 0) {
+            return delay;
+        }
+        
+        return delay + random.nextLong(phaseSpread + 1);
+    }
+    
+    /**
+     * Pauses a handle, keeping the remaining time until the next spawn
+     *
+     * @param handle The handle
+     */
+    public synchronized void pause(Handle handle) {
+        if (handle == null || handle.cancelled || handle.paused) {
+            return;
+        }
+        
+        handle.remaining = Math.max(0, handle.due - clock.getAsLong());
+        handle.paused = true;
+        remove(handle);
+    }
+    
+    /**
+     * Resumes a handle using the remaining time from when it was paused
+     *
+     * @param handle The handle
+     */
+    public synchronized void unpause(Handle handle) {
+        if (handle == null || handle.cancelled || !handle.paused) {
+            return;
+        }
+        
+        handle.paused = false;
+        handle.due = clock.getAsLong() + handle.remaining;
+        offer(handle);
+    }
+    
+    /**
+     * Resets the time until the next spawn of a handle to exactly the delay, the phase spread is only added when the handle is scheduled
+     *
+     * @param handle The handle
+     * @param delay  The new delay in milliseconds
+     * @param paused If the handle should be paused after the reset
+     */
+    public synchronized void reset(Handle handle, long delay, boolean paused) {
+        if (handle == null || handle.cancelled) {
+            return;
+        }
+        
+        remove(handle);
+        handle.paused = paused;
+        if (paused) {
+            handle.remaining = delay;
+        } else {
+            handle.due = clock.getAsLong() + delay;
+            offer(handle);
+        }
+    }
+    
+    /**
+     * Queues the items that are stored as counters for a handle to be spawned, they are spawned over the next ticks within the spawn budget
+     *
+     * @param handle The handle
+     */
+    public synchronized void materialize(Handle handle) {
+        if (handle == null || handle.cancelled || handle.materializing) {
+            return;
+        }
+        
+        handle.materializing = true;
+        materializing.add(handle);
+    }
+    
+    /**
+     * Removes the handle from this scheduler. A cancelled handle cannot be used again
+     *
+     * @param handle The handle
+     */
+    public synchronized void cancel(Handle handle) {
+        if (handle == null) {
+            return;
+        }
+        
+        remove(handle);
+        handle.cancelled = true;
+        //Like deferred handles, these are skipped when the queue is drained
+        handle.materializing = false;
+    }
+    
+    /**
+     * @param handle The handle
+     * @return The time in milliseconds until the next spawn of the handle
+     */
+    public synchronized long getTimeRemaining(Handle handle) {
+        if (handle == null || handle.cancelled) {
+            return 0;
+        }
+        
+        if (handle.paused) {
+            return handle.remaining;
+        }
+        
+        return Math.max(0, handle.due - clock.getAsLong());
+    }
+    
+    public LongSupplier getClock() {
+        return clock;
+    }
+    
+    public long getCurrentTime() {
+        return clock.getAsLong();
+    }
+    
+    public int getMaxSpawnsPerTick() {
+        return maxSpawnsPerTick;
+    }
+    
+    public void setMaxSpawnsPerTick(int maxSpawnsPerTick) {
+        this.maxSpawnsPerTick = maxSpawnsPerTick;
+    }
+    
+    public long getMaxNanosPerTick() {
+        return maxNanosPerTick;
+    }
+    
+    public void setMaxNanosPerTick(long maxNanosPerTick) {
+        this.maxNanosPerTick = maxNanosPerTick;
+    }
+    
+    public long getPhaseSpread() {
+        return phaseSpread;
+    }
+    
+    public void setPhaseSpread(long phaseSpread) {
+        this.phaseSpread = phaseSpread;
+    }
+    
+    public SpawnPreparer getPreparer() {
+        return preparer;
+    }
+    
+    /**
+     * @param preparer The preparer for the items of entries that are due soon, or null to create the items when they spawn
+     */
+    public synchronized void setPreparer(SpawnPreparer preparer) {
+        this.preparer = preparer;
+    }
+    
+    public long getPrepareAhead() {
+        return prepareAhead;
+    }
+    
+    public void setPrepareAhead(long prepareAhead) {
+        this.prepareAhead = prepareAhead;
+    }
+    
+    /**
+     * @return The amount of entries waiting for their next spawn, paused entries are not counted
+     */
+    public synchronized int getScheduledCount() {
+        return size;
+    }
+    
+    public long getTickCount() {
+        return tickCount;
+    }
+    
+    public long getTotalFired() {
+        return totalFired;
+    }
+    
+    public int getLastTickFired() {
+        return lastTickFired;
+    }
+    
+    public long getLastTickNanos() {
+        return lastTickNanos;
+    }
+    
+    public long getMaxTickNanos() {
+        return maxTickNanos;
+    }
+    
+    public long getAverageTickNanos() {
+        return tickCount > 0 ? totalTickNanos / tickCount : 0;
+    }
+    
+    /**
+     * @return The total amount of times an entry was deferred to a later tick because of the spawn budget
+     */
+    public long getTotalDeferred() {
+        return totalDeferred;
+    }
+    
+    public int getLastTickDeferred() {
+        return lastTickDeferred;
+    }
+    
+    /**
+     * @return The amount of entries waiting in the deferred queue
+     */
+    public synchronized int getPendingDeferred() {
+        return deferred.size();
+    }
+    
+    public void resetMetrics() {
+        this.tickCount = 0;
+        this.totalFired = 0;
+        this.totalTickNanos = 0;
+        this.lastTickNanos = 0;
+        this.maxTickNanos = 0;
+        this.lastTickFired = 0;
+        this.totalDeferred = 0;
+        this.lastTickDeferred = 0;
+    }
+    
+    private void offer(Handle handle) {
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+        }
+        
+        handle.heapIndex = size;
+        heap[size++] = handle;
+        siftUp(handle.heapIndex);
+    }
+    
+    private Handle poll() {
+        Handle first = heap[0];
+        removeAt(0);
+        return first;
+    }
+    
+    private void remove(Handle handle) {
+        //Deferred handles are skipped when the queue is drained instead of searching the queue
+        handle.deferred = false;
+        if (handle.heapIndex != -1) {
+            removeAt(handle.heapIndex);
+        }
+    }
+    
+    private void removeAt(int index) {
+        Handle removed = heap[index];
+        int last = --size;
+        if (index != last) {
+            Handle moved = heap[last];
+            heap[index] = moved;
+            moved.heapIndex = index;
+            siftDown(index);
+            if (heap[index] == moved) {
+                siftUp(index);
+            }
+        }
+        
+        heap[last] = null;
+        removed.heapIndex = -1;
+    }
+    
+    private void siftUp(int index) {
+        Handle handle = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            Handle parentHandle = heap[parent];
+            if (parentHandle.due <= handle.due) {
+                break;
+            }
+            
+            heap[index] = parentHandle;
+            parentHandle.heapIndex = index;
+            index = parent;
+        }
+        
+        heap[index] = handle;
+        handle.heapIndex = index;
+    }
+    
+    private void siftDown(int index) {
+        Handle handle = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = (index << 1) + 1;
+            int right = child + 1;
+            if (right < size && heap[right].due < heap[child].due) {
+                child = right;
+            }
+            
+            if (handle.due <= heap[child].due) {
+                break;
+            }
+            
+            heap[index] = heap[child];
+            heap[index].heapIndex = index;
+            index = child;
+        }
+        
+        heap[index] = handle;
+        handle.heapIndex = index;
+    }
+    
+    /**
+     * The state of a single entry within the scheduler
+     */
+    public static final class Handle {
+        private final ItemEntry entry;
+        private long due, remaining;
+        private boolean paused, cancelled, deferred, materializing;
+        private int heapIndex = -1;
+        
+        private Handle(ItemEntry entry) {
+            this.entry = entry;
+        }
+        
+        public ItemEntry getEntry() {
+            return entry;
+        }
+        
+        public boolean isPaused() {
+            return paused;
+        }
+        
+        public boolean isCancelled() {
+            return cancelled;
+        }
+        
+        public boolean isDeferred() {
+            return deferred;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,195 @@
+package com.stardevllc.staritemgenerators.common.storage;
+
+import com.stardevllc.staritemgenerators.common.model.ItemEntry.Flag;
+import com.stardevllc.staritemgenerators.common.model.ItemEntry.SpawnStrategy;
+import com.stardevllc.staritemgenerators.common.model.LootTable;
+import com.stardevllc.starmclib.Position;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.io.BukkitObjectInputStream;
+import org.bukkit.util.io.BukkitObjectOutputStream;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * The binary format for saved generators. Each file starts with a magic number and the format version so older files can still be read <br>
+ * Version 2 added the loot tables of entries and version 3 added the spawn points
+ */
+public final class BinaryGeneratorFormat {
+    private BinaryGeneratorFormat() {
+    }
+    
+    public static final int MAGIC = 0x53494731;
+    public static final int VERSION = 3;
+    
+    public static void write(DataOutputStream out, GeneratorData data) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeUTF(data.id());
+        out.writeBoolean(data.worldName() != null);
+        if (data.worldName() != null) {
+            out.writeUTF(data.worldName());
+        }
+        
+        out.writeInt(data.minX());
+        out.writeInt(data.minY());
+        out.writeInt(data.minZ());
+        out.writeInt(data.maxX());
+        out.writeInt(data.maxY());
+        out.writeInt(data.maxZ());
+        out.writeBoolean(data.running());
+        out.writeBoolean(data.virtual());
+        out.writeDouble(data.materializeRadius());
+        out.writeBoolean(data.catchUpUnloaded());
+        
+        out.writeInt(data.entries().size());
+        for (EntryData entry : data.entries()) {
+            out.writeUTF(entry.id());
+            out.writeLong(entry.cooldown());
+            out.writeInt(entry.maxItems());
+            out.writeInt(entry.x());
+            out.writeInt(entry.y());
+            out.writeInt(entry.z());
+            
+            //Flags are written by name so that new flags do not break older files
+            out.writeByte(entry.flags().size());
+            for (Flag flag : entry.flags()) {
+                out.writeUTF(flag.name());
+            }
+            
+            writeItem(out, entry.item());
+            
+            LootTable lootTable = entry.lootTable();
+            out.writeBoolean(lootTable != null);
+            if (lootTable != null) {
+                out.writeLong(entry.lootSeed());
+                out.writeInt(lootTable.size());
+                for (LootTable.Outcome outcome : lootTable.getOutcomes()) {
+                    out.writeDouble(outcome.weight());
+                    out.writeInt(outcome.minAmount());
+                    out.writeInt(outcome.maxAmount());
+                    writeItem(out, outcome.item());
+                }
+            }
+            
+            out.writeInt(entry.spawnPoints().size());
+            for (Position point : entry.spawnPoints()) {
+                out.writeInt(point.getBlockX());
+                out.writeInt(point.getBlockY());
+                out.writeInt(point.getBlockZ());
+            }
+            
+            out.writeUTF(entry.spawnStrategy().name());
+        }
+    }
+    
+    public static GeneratorData read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a generator file");
+        }
+        
+        int version = in.readUnsignedShort();
+        if (version > VERSION) {
+            throw new IOException("Unsupported generator file version " + version);
+        }
+        
+        String id = in.readUTF();
+        String worldName = in.readBoolean() ? in.readUTF() : null;
+        int minX = in.readInt(), minY = in.readInt(), minZ = in.readInt();
+        int maxX = in.readInt(), maxY = in.readInt(), maxZ = in.readInt();
+        boolean running = in.readBoolean();
+        boolean virtual = in.readBoolean();
+        double materializeRadius = in.readDouble();
+        boolean catchUpUnloaded = in.readBoolean();
+        
+        int entryCount = in.readInt();
+        List<EntryData> entries = new ArrayList<>(entryCount);
+        for (int i = 0; i < entryCount; i++) {
+            String entryId = in.readUTF();
+            long cooldown = in.readLong();
+            int maxItems = in.readInt();
+            int x = in.readInt(), y = in.readInt(), z = in.readInt();
+            
+            int flagCount = in.readUnsignedByte();
+            Set<Flag> flags = EnumSet.noneOf(Flag.class);
+            for (int f = 0; f < flagCount; f++) {
+                String name = in.readUTF();
+                try {
+                    flags.add(Flag.valueOf(name));
+                } catch (IllegalArgumentException e) {
+                    //Flag was removed, ignore it
+                }
+            }
+            
+            ItemStack item = readItem(in);
+            
+            LootTable lootTable = null;
+            long lootSeed = 0;
+            if (version >= 2 && in.readBoolean()) {
+                lootSeed = in.readLong();
+                int outcomeCount = in.readInt();
+                List<LootTable.Outcome> outcomes = new ArrayList<>(outcomeCount);
+                for (int o = 0; o < outcomeCount; o++) {
+                    double weight = in.readDouble();
+                    int minAmount = in.readInt(), maxAmount = in.readInt();
+                    outcomes.add(new LootTable.Outcome(readItem(in), weight, minAmount, maxAmount));
+                }
+                
+                try {
+                    lootTable = new LootTable(outcomes);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Invalid loot table for the entry " + entryId, e);
+                }
+            }
+            
+            List<Position> spawnPoints = new ArrayList<>();
+            SpawnStrategy spawnStrategy = SpawnStrategy.ROUND_ROBIN;
+            if (version >= 3) {
+                int pointCount = in.readInt();
+                for (int p = 0; p < pointCount; p++) {
+                    spawnPoints.add(new Position(in.readInt(), in.readInt(), in.readInt()));
+                }
+                
+                String strategyName = in.readUTF();
+                try {
+                    spawnStrategy = SpawnStrategy.valueOf(strategyName);
+                } catch (IllegalArgumentException e) {
+                    //Strategy was removed, use the default
+                }
+            }
+            
+            entries.add(new EntryData(entryId, item, cooldown, maxItems, x, y, z, flags, lootTable, lootSeed, List.copyOf(spawnPoints), spawnStrategy));
+        }
+        
+        return new GeneratorData(id, worldName, minX, minY, minZ, maxX, maxY, maxZ, running, virtual, materializeRadius, catchUpUnloaded, entries);
+    }
+    
+    private static void writeItem(DataOutputStream out, ItemStack item) throws IOException {
+        byte[] bytes = serializeItem(item);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    private static ItemStack readItem(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return deserializeItem(bytes);
+    }
+    
+    private static byte[] serializeItem(ItemStack item) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BukkitObjectOutputStream out = new BukkitObjectOutputStream(bytes)) {
+            out.writeObject(item);
+        }
+        
+        return bytes.toByteArray();
+    }
+    
+    private static ItemStack deserializeItem(byte[] item) throws IOException {
+        try (BukkitObjectInputStream in = new BukkitObjectInputStream(new ByteArrayInputStream(item))) {
+            return (ItemStack) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,51 @@
+package com.stardevllc.staritemgenerators.common.storage;
+
+import com.stardevllc.staritemgenerators.common.model.ItemEntry;
+import com.stardevllc.staritemgenerators.common.model.ItemEntry.Flag;
+import com.stardevllc.staritemgenerators.common.model.ItemEntry.SpawnStrategy;
+import com.stardevllc.staritemgenerators.common.model.LootTable;
+import com.stardevllc.staritemgenerators.common.model.LootTableEntry;
+import com.stardevllc.starmclib.Position;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An immutable copy of the saved state of an {@link ItemEntry}. The item is the built template as ItemBuilder does not support saving yet <br>
+ * The loot table is null for entries that are not a {@link LootTableEntry}, the table is immutable so it is shared instead of copied
+ */
+public record EntryData(String id, ItemStack item, long cooldown, int maxItems, int x, int y, int z, Set<Flag> flags, LootTable lootTable, long lootSeed, List<Position> spawnPoints, SpawnStrategy spawnStrategy) {
+    
+    /**
+     * This must be called on the main thread
+     *
+     * @param entry The entry
+     * @return The data of the entry
+     */
+    public static EntryData of(ItemEntry entry) {
+        Position pos = entry.getSpawnPosition();
+        List<Position> spawnPoints = new ArrayList<>();
+        for (Position point : entry.getSpawnPoints()) {
+            spawnPoints.add(new Position(point.getBlockX(), point.getBlockY(), point.getBlockZ()));
+        }
+        
+        LootTable lootTable = entry instanceof LootTableEntry lootEntry ? lootEntry.getLootTable() : null;
+        long lootSeed = entry instanceof LootTableEntry lootEntry ? lootEntry.getSeed() : 0;
+        return new EntryData(entry.getId(), entry.getItemTemplate().clone(), entry.getCooldown(), entry.getMaxItems(), pos.getBlockX(), pos.getBlockY(), pos.getBlockZ(), Set.copyOf(entry.getFlags()), lootTable, lootSeed, List.copyOf(spawnPoints), entry.getSpawnStrategy());
+    }
+    
+    public ItemEntry toEntry() {
+        ItemEntry entry;
+        if (lootTable != null) {
+            entry = new LootTableEntry(id, lootTable, lootSeed, cooldown, maxItems, new Position(x, y, z), flags);
+        } else {
+            entry = new ItemEntry(id, item, cooldown, maxItems, new Position(x, y, z), flags);
+        }
+        
+        entry.setSpawnPoints(spawnPoints);
+        entry.setSpawnStrategy(spawnStrategy);
+        return entry;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,51 @@
+package com.stardevllc.staritemgenerators.common.storage;
+
+import com.stardevllc.staritemgenerators.common.model.ItemEntry;
+import com.stardevllc.staritemgenerators.common.model.ItemGenerator;
+import com.stardevllc.starmclib.Position;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable copy of the saved state of an {@link ItemGenerator} <br>
+ * These are created on the main thread and can then be written from any thread
+ */
+public record GeneratorData(String id, String worldName, int minX, int minY, int minZ, int maxX, int maxY, int maxZ, boolean running, boolean virtual, double materializeRadius, boolean catchUpUnloaded, List<EntryData> entries) {
+    
+    /**
+     * This must be called on the main thread
+     *
+     * @param generator The generator
+     * @return The data of the generator
+     */
+    public static GeneratorData of(ItemGenerator generator) {
+        List<EntryData> entries = new ArrayList<>();
+        for (ItemEntry entry : generator.getItemEntries()) {
+            entries.add(EntryData.of(entry));
+        }
+        
+        Position min = generator.getBoundsMin();
+        Position max = generator.getBoundsMax();
+        String worldName = generator.getWorld() != null ? generator.getWorld().getName() : null;
+        return new GeneratorData(generator.getId(), worldName, min.getBlockX(), min.getBlockY(), min.getBlockZ(), max.getBlockX(), max.getBlockY(), max.getBlockZ(), generator.runningProperty().get(), generator.isVirtual(), generator.getMaterializeRadius(), generator.isCatchUpUnloaded(), List.copyOf(entries));
+    }
+    
+    /**
+     * Creates a new generator from this data. It is not registered or initialized
+     *
+     * @return The new generator
+     */
+    public ItemGenerator toGenerator() {
+        List<ItemEntry> itemEntries = new ArrayList<>();
+        for (EntryData entry : entries) {
+            itemEntries.add(entry.toEntry());
+        }
+        
+        ItemGenerator generator = new ItemGenerator(id, itemEntries, new Position(minX, minY, minZ), new Position(maxX, maxY, maxZ));
+        generator.setVirtual(virtual);
+        generator.setMaterializeRadius(materializeRadius);
+        generator.setCatchUpUnloaded(catchUpUnloaded);
+        return generator;
+    }
+}
\ No newline at end of file
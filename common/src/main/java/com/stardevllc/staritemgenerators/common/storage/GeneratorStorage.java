@@ -0,0 +1,419 @@
+package com.stardevllc.staritemgenerators.common.storage;
+
+import com.stardevllc.staritemgenerators.common.model.GeneratorRegistry;
+import com.stardevllc.staritemgenerators.common.model.ItemGenerator;
+import com.stardevllc.staritemgenerators.common.model.LootTable;
+import com.stardevllc.staritemgenerators.common.scheduler.ExecutionBackend;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Saves and loads generators with one binary file per generator <br>
+ * Generators are copied into {@link GeneratorData} on the calling thread, which must be the main thread, and all file access happens on background threads <br>
+ * Files are written to a temporary file first and then moved over the old file, so a crash while saving never leaves a partial file
+ */
+public class GeneratorStorage {
+    
+    public static final String FILE_EXTENSION = ".gen";
+    
+    private final File directory;
+    private final Logger logger;
+    
+    /**
+     * Reads are done in parallel, writes go through a single thread so writes to the same file never overlap
+     */
+    private final ExecutorService readExecutor, writeExecutor;
+    
+    /**
+     * Loaded generators that are waiting for their world to load, keyed by the world name
+     */
+    private final Map<String, List<GeneratorData>> pendingWorlds = new HashMap<>();
+    
+    /**
+     * The files generators were loaded from keyed by the generator id, so files with an older name are replaced when the generator is saved
+     */
+    private final Map<String, File> loadedFiles = new ConcurrentHashMap<>();
+    
+    /**
+     * The generator id that owns each file name, the names are lower case as some file systems ignore the case <br>
+     * This is only used by the write thread
+     */
+    private final Map<String, String> fileOwners = new HashMap<>();
+    
+    private ExecutionBackend.Task autosaveTask;
+    
+    public GeneratorStorage(File directory, Logger logger) {
+        this.directory = directory;
+        this.logger = logger;
+        this.readExecutor = Executors.newFixedThreadPool(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())), daemonThreads("StarItemGenerators-Load"));
+        this.writeExecutor = Executors.newSingleThreadExecutor(daemonThreads("StarItemGenerators-Save"));
+    }
+    
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    /**
+     * Reads all saved generators in parallel
+     *
+     * @return A future with the data of all generators that could be read
+     */
+    public CompletableFuture<List<GeneratorData>> loadAll() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_EXTENSION));
+        if (files == null || files.length == 0) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        
+        List<CompletableFuture<GeneratorData>> futures = new ArrayList<>(files.length);
+        for (File file : files) {
+            futures.add(CompletableFuture.supplyAsync(() -> read(file), readExecutor));
+        }
+        
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(v -> {
+            List<GeneratorData> loaded = new ArrayList<>(futures.size());
+            for (CompletableFuture<GeneratorData> future : futures) {
+                GeneratorData data = future.join();
+                if (data != null) {
+                    loaded.add(data);
+                }
+            }
+            
+            return loaded;
+        });
+    }
+    
+    private GeneratorData read(File file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            GeneratorData data = BinaryGeneratorFormat.read(in);
+            this.loadedFiles.put(data.id(), file);
+            return data;
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Could not load the generator file " + file.getName(), e);
+            return null;
+        }
+    }
+    
+    /**
+     * Creates, registers and initializes generators from loaded data. This must be called on the main thread <br>
+     * Generators in worlds that are not loaded are kept until {@link #handleWorldLoad(GeneratorRegistry, World)} is called for the world
+     *
+     * @param registry The registry to register the generators to
+     * @param loaded   The loaded data
+     */
+    public void register(GeneratorRegistry registry, List<GeneratorData> loaded) {
+        for (GeneratorData data : loaded) {
+            if (registry.containsKey(data.id())) {
+                logger.warning("A generator with the id " + data.id() + " is already registered, skipping the saved one");
+                continue;
+            }
+            
+            if (data.worldName() == null) {
+                ItemGenerator generator = data.toGenerator();
+                registry.register(generator);
+                generator.clearDirty();
+                continue;
+            }
+            
+            World world = Bukkit.getWorld(data.worldName());
+            if (world == null) {
+                this.pendingWorlds.computeIfAbsent(data.worldName(), name -> new ArrayList<>()).add(data);
+                continue;
+            }
+            
+            register(registry, data, world);
+        }
+    }
+    
+    private void register(GeneratorRegistry registry, GeneratorData data, World world) {
+        ItemGenerator generator = data.toGenerator();
+        registry.register(generator);
+        generator.init(world);
+        if (data.running()) {
+            generator.start();
+        }
+        
+        //Nothing changed compared to the file
+        generator.clearDirty();
+    }
+    
+    /**
+     * Registers the loaded generators that were waiting for the world
+     *
+     * @param registry The registry
+     * @param world    The world that loaded
+     */
+    public void handleWorldLoad(GeneratorRegistry registry, World world) {
+        List<GeneratorData> pending = this.pendingWorlds.remove(world.getName());
+        if (pending == null) {
+            return;
+        }
+        
+        for (GeneratorData data : pending) {
+            if (!registry.containsKey(data.id())) {
+                register(registry, data, world);
+            }
+        }
+    }
+    
+    /**
+     * Saves a generator. This must be called on the main thread, the file is written in the background
+     *
+     * @param generator The generator
+     * @return A future that completes when the file is written
+     */
+    public CompletableFuture<Void> save(ItemGenerator generator) {
+        GeneratorData data = snapshot(generator);
+        return CompletableFuture.runAsync(() -> write(data, generator), writeExecutor);
+    }
+    
+    /**
+     * Saves all the generators. This must be called on the main thread, the files are written in the background <br>
+     * Generators that are not saved, like instances of a template, are skipped
+     *
+     * @param generators The generators
+     * @return A future that completes when all files are written
+     */
+    public CompletableFuture<Void> saveAll(Collection<ItemGenerator> generators) {
+        List<ItemGenerator> toSave = new ArrayList<>(generators.size());
+        for (ItemGenerator generator : generators) {
+            if (generator.isSaved()) {
+                toSave.add(generator);
+            }
+        }
+        
+        List<GeneratorData> data = new ArrayList<>(toSave.size());
+        for (ItemGenerator generator : toSave) {
+            data.add(snapshot(generator));
+        }
+        
+        return CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < data.size(); i++) {
+                write(data.get(i), toSave.get(i));
+            }
+        }, writeExecutor);
+    }
+    
+    /**
+     * Saves only the generators that changed since they were last saved. This must be called on the main thread
+     *
+     * @param registry The registry
+     * @return A future that completes when the changed generators are written
+     */
+    public CompletableFuture<Void> saveDirty(GeneratorRegistry registry) {
+        List<ItemGenerator> dirty = registry.drainDirtyGenerators();
+        if (dirty.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        return saveAll(dirty);
+    }
+    
+    /**
+     * Starts saving changed generators on an interval
+     *
+     * @param execution     The backend that runs the task
+     * @param registry      The registry
+     * @param intervalTicks The interval in ticks
+     */
+    public void startAutosave(ExecutionBackend execution, GeneratorRegistry registry, long intervalTicks) {
+        stopAutosave();
+        if (intervalTicks > 0) {
+            this.autosaveTask = execution.runGlobalTimer(() -> saveDirty(registry), intervalTicks, intervalTicks);
+        }
+    }
+    
+    public void stopAutosave() {
+        if (this.autosaveTask != null) {
+            this.autosaveTask.cancel();
+            this.autosaveTask = null;
+        }
+    }
+    
+    private GeneratorData snapshot(ItemGenerator generator) {
+        //Cleared before the copy so changes made while writing mark the generator again
+        generator.clearDirty();
+        return GeneratorData.of(generator);
+    }
+    
+    /**
+     * Deletes the saved file of a generator
+     *
+     * @param generatorId The generator id
+     * @return A future that completes when the file is deleted
+     */
+    public CompletableFuture<Void> delete(String generatorId) {
+        return CompletableFuture.runAsync(() -> {
+            File file = getFile(generatorId);
+            file.delete();
+            this.fileOwners.remove(file.getName().toLowerCase(Locale.ROOT), generatorId);
+            File loadedFile = this.loadedFiles.remove(generatorId);
+            if (loadedFile != null && isOwnedFile(loadedFile, generatorId)) {
+                loadedFile.delete();
+            }
+        }, writeExecutor);
+    }
+    
+    private void write(GeneratorData data, ItemGenerator generator) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            logger.severe("Could not create the generators folder " + directory.getPath());
+            generator.markDirty();
+            return;
+        }
+        
+        File file = getFile(data.id());
+        String owner = this.fileOwners.putIfAbsent(file.getName().toLowerCase(Locale.ROOT), data.id());
+        if (owner != null && !owner.equals(data.id())) {
+            logger.severe("Could not save the generator " + data.id() + " as its file name is the same as the generator " + owner + " on file systems that ignore the case");
+            return;
+        }
+        
+        File tempFile = new File(directory, file.getName() + ".tmp");
+        try {
+            try (FileOutputStream fileOut = new FileOutputStream(tempFile); DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+                BinaryGeneratorFormat.write(out, data);
+                out.flush();
+                fileOut.getFD().sync();
+            }
+            
+            try {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            
+            //Files saved with an older file name would load as a duplicate
+            File loadedFile = this.loadedFiles.remove(data.id());
+            if (loadedFile != null && !loadedFile.getName().equals(file.getName()) && isOwnedFile(loadedFile, data.id())) {
+                Files.deleteIfExists(loadedFile.toPath());
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Could not save the generator " + data.id(), e);
+            //Try again with the next autosave
+            generator.markDirty();
+        }
+    }
+    
+    /**
+     * @param file        The file
+     * @param generatorId The generator id
+     * @return If no other generator was saved to the file since it was loaded
+     */
+    private boolean isOwnedFile(File file, String generatorId) {
+        String owner = this.fileOwners.get(file.getName().toLowerCase(Locale.ROOT));
+        return owner == null || owner.equals(generatorId);
+    }
+    
+    /**
+     * Exports all the generators to a single YAML file that can be read and edited by hand
+     *
+     * @param generators The generators
+     * @param file       The file to export to
+     * @return A future that completes when the file is written
+     */
+    public CompletableFuture<Void> exportYaml(Collection<ItemGenerator> generators, File file) {
+        List<GeneratorData> data = new ArrayList<>(generators.size());
+        for (ItemGenerator generator : generators) {
+            if (generator.isSaved()) {
+                data.add(GeneratorData.of(generator));
+            }
+        }
+        
+        return CompletableFuture.runAsync(() -> {
+            YamlConfiguration config = new YamlConfiguration();
+            config.set("version", BinaryGeneratorFormat.VERSION);
+            for (GeneratorData generator : data) {
+                String path = "generators." + generator.id();
+                config.set(path + ".world", generator.worldName());
+                config.set(path + ".min", List.of(generator.minX(), generator.minY(), generator.minZ()));
+                config.set(path + ".max", List.of(generator.maxX(), generator.maxY(), generator.maxZ()));
+                config.set(path + ".running", generator.running());
+                config.set(path + ".virtual", generator.virtual());
+                config.set(path + ".materializeradius", generator.materializeRadius());
+                config.set(path + ".catchupunloaded", generator.catchUpUnloaded());
+                for (EntryData entry : generator.entries()) {
+                    String entryPath = path + ".entries." + entry.id();
+                    config.set(entryPath + ".item", entry.item());
+                    config.set(entryPath + ".cooldown", entry.cooldown());
+                    config.set(entryPath + ".maxitems", entry.maxItems());
+                    config.set(entryPath + ".position", List.of(entry.x(), entry.y(), entry.z()));
+                    config.set(entryPath + ".flags", entry.flags().stream().map(Enum::name).toList());
+                    if (!entry.spawnPoints().isEmpty()) {
+                        config.set(entryPath + ".spawnpoints", entry.spawnPoints().stream().map(point -> List.of(point.getBlockX(), point.getBlockY(), point.getBlockZ())).toList());
+                    }
+                    config.set(entryPath + ".spawnstrategy", entry.spawnStrategy().name());
+                    if (entry.lootTable() != null) {
+                        config.set(entryPath + ".loot.seed", entry.lootSeed());
+                        List<LootTable.Outcome> outcomes = entry.lootTable().getOutcomes();
+                        for (int i = 0; i < outcomes.size(); i++) {
+                            String outcomePath = entryPath + ".loot.outcomes." + i;
+                            config.set(outcomePath + ".item", outcomes.get(i).item());
+                            config.set(outcomePath + ".weight", outcomes.get(i).weight());
+                            config.set(outcomePath + ".amount", List.of(outcomes.get(i).minAmount(), outcomes.get(i).maxAmount()));
+                        }
+                    }
+                }
+            }
+            
+            try {
+                config.save(file);
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Could not export the generators to " + file.getName(), e);
+            }
+        }, writeExecutor);
+    }
+    
+    /**
+     * @param generatorId The generator id
+     * @return The file of the generator, characters that are not letters, digits, _ or - are escaped as %XX of their UTF-8 bytes so every id has its own file
+     */
+    public File getFile(String generatorId) {
+        return new File(directory, encodeFileName(generatorId) + FILE_EXTENSION);
+    }
+    
+    static String encodeFileName(String generatorId) {
+        StringBuilder sb = new StringBuilder(generatorId.length());
+        for (byte b : generatorId.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '-') {
+                sb.append(c);
+            } else {
+                sb.append('%').append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xF, 16))).append(Character.toUpperCase(Character.forDigit(b & 0xF, 16)));
+            }
+        }
+        
+        return sb.toString();
+    }
+    
+    public File getDirectory() {
+        return directory;
+    }
+    
+    /**
+     * Waits for pending writes and stops the background threads
+     */
+    public void close() {
+        stopAutosave();
+        readExecutor.shutdown();
+        writeExecutor.shutdown();
+        try {
+            if (!writeExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warning("Timed out waiting for generators to save");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
\ No newline at end of file
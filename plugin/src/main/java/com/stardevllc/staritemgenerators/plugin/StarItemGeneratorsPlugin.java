@@ -3,24 +3,76 @@ package com.stardevllc.staritemgenerators.plugin;
 import com.stardevllc.staritemgenerators.common.StarItemGenerators;
 import com.stardevllc.staritemgenerators.common.command.ItemGeneratorCommand;
 import com.stardevllc.staritemgenerators.common.listener.GeneratorListener;
+import com.stardevllc.staritemgenerators.common.model.listener.AsyncListenerDispatcher;
+import com.stardevllc.staritemgenerators.common.scheduler.SpawnPreparer;
+import com.stardevllc.staritemgenerators.common.scheduler.SpawnScheduler;
 import com.stardevllc.starmclib.plugin.ExtendedJavaPlugin;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerPickupItemEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
 
 public class StarItemGeneratorsPlugin extends ExtendedJavaPlugin implements Listener {
     
     public void onEnable() {
         super.onEnable();
         
+        saveDefaultConfig();
+        
         StarItemGenerators.init(this);
         
+        SpawnScheduler spawnScheduler = StarItemGenerators.getGeneratorRegistry().getSpawnScheduler();
+        spawnScheduler.setMaxSpawnsPerTick(getConfig().getInt("spawn-budget.max-spawns-per-tick"));
+        spawnScheduler.setMaxNanosPerTick(getConfig().getLong("spawn-budget.max-micros-per-tick") * 1000L);
+        spawnScheduler.setPhaseSpread(getConfig().getLong("spawn-budget.phase-spread"));
+        if (getConfig().getBoolean("spawn-preparation.enabled")) {
+            spawnScheduler.setPreparer(new SpawnPreparer(getLogger()));
+            spawnScheduler.setPrepareAhead(getConfig().getLong("spawn-preparation.ahead-millis", 50));
+        }
+        
+        AsyncListenerDispatcher listenerDispatcher = StarItemGenerators.getGeneratorRegistry().getListenerDispatcher();
+        listenerDispatcher.setCapacity(getConfig().getInt("async-listeners.capacity", AsyncListenerDispatcher.DEFAULT_CAPACITY));
+        listenerDispatcher.setBatchSize(getConfig().getInt("async-listeners.batch-size", AsyncListenerDispatcher.DEFAULT_BATCH_SIZE));
+        
+        StarItemGenerators.startAutosave(getConfig().getLong("autosave-interval") * 20L);
+        
+        if (getConfig().getBoolean("metrics-exporter.enabled")) {
+            if (getConfig().getString("metrics-exporter.mode", "http").equalsIgnoreCase("file")) {
+                StarItemGenerators.startMetricsFileExporter(new File(getDataFolder(), getConfig().getString("metrics-exporter.file", "metrics.prom")), getConfig().getLong("metrics-exporter.file-interval", 15) * 20L);
+            } else {
+                String host = getConfig().getString("metrics-exporter.host", "127.0.0.1");
+                int port = getConfig().getInt("metrics-exporter.port", 9464);
+                try {
+                    StarItemGenerators.startMetricsHttpExporter(host, port);
+                    getLogger().info("Serving generator metrics at http://" + host + ":" + port + "/metrics");
+                } catch (IOException e) {
+                    getLogger().log(Level.SEVERE, "Could not start the metrics exporter on " + host + ":" + port, e);
+                }
+            }
+        }
+        
         registerCommand("itemgenerator", new ItemGeneratorCommand(this, StarItemGenerators.getGeneratorRegistry()));
-        registerListeners(this, new GeneratorListener(StarItemGenerators.getGeneratorRegistry()));
+        GeneratorListener generatorListener = new GeneratorListener(StarItemGenerators.getGeneratorRegistry());
+        registerListeners(this, generatorListener);
+        generatorListener.registerEntitiesLoad(this);
+    }
+    
+    public void onDisable() {
+        StarItemGenerators.shutdown();
+        super.onDisable();
     }
     
     @EventHandler 
     public void onItemPickup(PlayerPickupItemEvent e) {
         StarItemGenerators.handleItemPickup(e.getPlayer(), e.getItem(), e.getRemaining());
     }
+    
+    @EventHandler
+    public void onWorldLoad(WorldLoadEvent e) {
+        StarItemGenerators.handleWorldLoad(e.getWorld());
+    }
 }
\ No newline at end of file